@@ -0,0 +1,27 @@
+package com.task.testtask.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * It's an entry point of the benchmarks jar. It accepts the usual JMH command line and always adds the GC profiler,
+ * so every run reports the allocation rate next to the throughput.
+ */
+public class BenchmarkRunner {
+  private BenchmarkRunner() {
+
+  }
+
+  public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+    final var commandLineOptions = new CommandLineOptions(args);
+    final var options = new OptionsBuilder()
+            .parent(commandLineOptions)
+            .addProfiler(GCProfiler.class)
+            .build();
+    new Runner(options).run();
+  }
+}
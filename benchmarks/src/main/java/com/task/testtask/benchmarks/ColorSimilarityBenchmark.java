@@ -0,0 +1,91 @@
+package com.task.testtask.benchmarks;
+
+import com.task.testtask.utils.ColorSimilarityUtils;
+import javafx.scene.paint.Color;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * It's a benchmark of a single color comparison, the colors are prepared up front so only the comparison is measured.
+ * <p>The primitive variants are expected to show no allocation at all in the GC profiler output.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ColorSimilarityBenchmark {
+  private static final int PAIRS_COUNT = 1024;
+  private static final int CHANNELS_COUNT = 3;
+  private static final long SEED = 42;
+
+  private Color[] first;
+  private Color[] second;
+  private double[] rgb;
+  private double[] lab;
+
+  @Setup
+  public void setUp() {
+    final var random = new Random(SEED);
+    first = new Color[PAIRS_COUNT];
+    second = new Color[PAIRS_COUNT];
+    for (int i = 0; i < PAIRS_COUNT; i++) {
+      first[i] = Color.color(random.nextDouble(), random.nextDouble(), random.nextDouble());
+      second[i] = Color.color(random.nextDouble(), random.nextDouble(), random.nextDouble());
+    }
+
+    rgb = new double[2 * PAIRS_COUNT * CHANNELS_COUNT];
+    for (int i = 0; i < PAIRS_COUNT; i++) {
+      putColor(first[i], i);
+      putColor(second[i], PAIRS_COUNT + i);
+    }
+    lab = new double[rgb.length];
+    ColorSimilarityUtils.toLABColors(rgb, lab, 2 * PAIRS_COUNT);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(PAIRS_COUNT)
+  public void calculateColorSimilarity(Blackhole blackhole) {
+    for (int i = 0; i < PAIRS_COUNT; i++) {
+      blackhole.consume(ColorSimilarityUtils.calculateColorSimilarity(first[i], second[i]));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(PAIRS_COUNT)
+  public void similarity(Blackhole blackhole) {
+    for (int i = 0, offset = 0; i < PAIRS_COUNT; i++, offset += CHANNELS_COUNT) {
+      final var otherOffset = offset + PAIRS_COUNT * CHANNELS_COUNT;
+      blackhole.consume(ColorSimilarityUtils.similarity(rgb[offset], rgb[offset + 1], rgb[offset + 2],
+              rgb[otherOffset], rgb[otherOffset + 1], rgb[otherOffset + 2]));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(PAIRS_COUNT)
+  public void labSimilarity(Blackhole blackhole) {
+    for (int i = 0, offset = 0; i < PAIRS_COUNT; i++, offset += CHANNELS_COUNT) {
+      blackhole.consume(ColorSimilarityUtils.labSimilarity(lab, offset, lab, offset + PAIRS_COUNT * CHANNELS_COUNT));
+    }
+  }
+
+  private void putColor(Color color, int index) {
+    rgb[index * CHANNELS_COUNT] = color.getRed();
+    rgb[index * CHANNELS_COUNT + 1] = color.getGreen();
+    rgb[index * CHANNELS_COUNT + 2] = color.getBlue();
+  }
+}
@@ -0,0 +1,72 @@
+package com.task.testtask.benchmarks;
+
+import com.task.testtask.saving.PuzzleSet;
+import com.task.testtask.saving.TileSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * It's a benchmark of cutting the image into puzzles the way the game does it when a grid isn't in the cache yet:
+ * {@code ImageCache} cuts the decoded source, writes the puzzle set file and maps it back. The game then copies the
+ * mapped tiles into a single atlas and only creates views into it, which needs the JavaFX toolkit and isn't measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class CuttingBenchmark {
+  private static final long SEED = 42;
+
+  @Param({"4", "10", "32", "100"})
+  private int gridSize;
+
+  @Param({"16", "48"})
+  private int tileSize;
+
+  private int[] pixels;
+  private int width;
+  private int height;
+  private int[] truthOrder;
+  private Path file;
+
+  @Setup
+  public void setUp() throws IOException {
+    width = gridSize * tileSize;
+    height = gridSize * tileSize;
+    pixels = SyntheticPuzzles.image(width, height, SEED);
+    truthOrder = new int[gridSize * gridSize];
+    for (int i = 0; i < truthOrder.length; i++) {
+      truthOrder[i] = i;
+    }
+    file = Files.createTempFile("cutting-benchmark", "." + PuzzleSet.FILE_EXTENSION);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  @Benchmark
+  public PuzzleSet cutPuzzles() throws IOException {
+    final var tileSet = TileSet.cut(pixels, width, height, gridSize, gridSize);
+    PuzzleSet.write(file, tileSet, gridSize, gridSize, null, truthOrder);
+    return PuzzleSet.read(file);
+  }
+}
@@ -0,0 +1,59 @@
+package com.task.testtask.benchmarks;
+
+import com.task.testtask.enums.ScoreMetric;
+import com.task.testtask.main.AutomaticImageCollector;
+import com.task.testtask.saving.TileSet;
+import com.task.testtask.solver.SolverOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * It's a benchmark of the whole automatic collecting, from reading the pixels to the final order.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class SolverBenchmark {
+  private static final long SEED = 42;
+
+  @Param({"4", "10", "32", "100"})
+  private int gridSize;
+
+  @Param({"16", "48"})
+  private int tileSize;
+
+  @Param({"PIXEL_DISSIMILARITY", "MEAN_COLOR"})
+  private ScoreMetric metric;
+
+  private TileSet tileSet;
+  private SolverOptions options;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    tileSet = SyntheticPuzzles.shuffledTiles(gridSize, gridSize, tileSize, SEED);
+    options = SolverOptions.builder().metric(metric).build();
+  }
+
+  @Benchmark
+  public List<Integer> automaticallyCollectImage() {
+    final var collector = new AutomaticImageCollector(tileSet.size(), tileSet.width(), tileSet.height(),
+            (index, buffer) -> tileSet.tiles().get(index), options);
+    return collector.automaticallyCollectImage();
+  }
+}
@@ -0,0 +1,191 @@
+package com.task.testtask.benchmarks;
+
+import com.task.testtask.main.AutomaticImageCollector;
+import com.task.testtask.saving.TileSet;
+import com.task.testtask.solver.Placement;
+import com.task.testtask.solver.SolverOptions;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TreeMap;
+
+/**
+ * It's an end-to-end report of the solver wall time on deterministic puzzles, it's run by hand to compare changes on
+ * the same machine.
+ * <p>Puzzles are cut from the generated image of {@link SyntheticPuzzles} and from the image assembled from the
+ * bundled tiles over a range of grids and tile sizes, and shuffled with a fixed seed. For each case the best wall
+ * time of a few runs is printed together with the share of puzzles placed at their places and the share of right
+ * neighbour pairs. A few solves of a separate image warm the JIT up before the first case.</p>
+ * <p>The report only prints the numbers. The tests of the game fail when the accuracy drops under fixed floors, and
+ * their {@code performance} tag fails when a solve takes longer than its budget ({@code mvn test -Pperformance}).
+ * Options: {@code --images DIR} with the bundled tiles and {@code --runs N}.</p>
+ */
+public class SolverTimingReport {
+  private static final long SEED = 42;
+  private static final double NANOS_IN_MILLI = 1_000_000.0;
+  private static final int WARMUP_GRID_SIZE = 16;
+  private static final int WARMUP_TILE_SIZE = 16;
+  private static final int WARMUP_RUNS_COUNT = 5;
+  private static final int BUNDLED_ROWS_COUNT = 4;
+  private static final int BUNDLED_COLUMNS_COUNT = 4;
+  private static final int[][] SYNTHETIC_CASES = {
+          // rows, columns, tile size
+          {4, 4, 16}, {4, 4, 48}, {10, 10, 16}, {10, 10, 48}, {12, 20, 24}, {32, 32, 16}, {32, 32, 48},
+          {64, 64, 16}
+  };
+  private static final int[][] BUNDLED_CASES = {
+          // rows, columns
+          {4, 4}, {8, 8}, {16, 16}, {24, 32}
+  };
+
+  private SolverTimingReport() {
+
+  }
+
+  /**
+   * It's a result of a single case.
+   *
+   * @param directAccuracy share of puzzles placed at their places
+   * @param neighbourAccuracy share of pairs of touching places that hold puzzles that touch in the image
+   * @param millis best wall time of the solve
+   */
+  private record Result(double directAccuracy, double neighbourAccuracy, double millis) {
+  }
+
+  public static void main(String[] args) {
+    System.setProperty("java.awt.headless", "true");
+
+    var imagesDirectory = Path.of("..", "src", "main", "resources", "images");
+    var runsCount = 3;
+
+    for (int i = 0; i < args.length; i++) {
+      switch (args[i]) {
+        case "--images" -> imagesDirectory = Path.of(args[++i]);
+        case "--runs" -> runsCount = Integer.parseInt(args[++i]);
+        default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+      }
+    }
+
+    // the first solves are slow until the hot loops are compiled, so they aren't measured
+    final var warmupSize = WARMUP_GRID_SIZE * WARMUP_TILE_SIZE;
+    run(SyntheticPuzzles.image(warmupSize, warmupSize, SEED + 1), warmupSize, warmupSize, WARMUP_GRID_SIZE,
+            WARMUP_GRID_SIZE, WARMUP_RUNS_COUNT);
+
+    final var results = new TreeMap<String, Result>();
+    for (var gridCase : SYNTHETIC_CASES) {
+      final var width = gridCase[1] * gridCase[2];
+      final var height = gridCase[0] * gridCase[2];
+      final var name = String.format(Locale.ROOT, "synthetic-%dx%d-%dpx", gridCase[0], gridCase[1], gridCase[2]);
+      results.put(name, run(SyntheticPuzzles.image(width, height, SEED), width, height, gridCase[0], gridCase[1],
+              runsCount));
+    }
+
+    final var bundled = TileSet.readDirectory(imagesDirectory);
+    final var bundledWidth = BUNDLED_COLUMNS_COUNT * bundled.width();
+    final var bundledHeight = BUNDLED_ROWS_COUNT * bundled.height();
+    final var bundledImage = assemble(bundled, BUNDLED_COLUMNS_COUNT);
+    for (var gridCase : BUNDLED_CASES) {
+      final var name = String.format(Locale.ROOT, "images-%dx%d", gridCase[0], gridCase[1]);
+      results.put(name, run(bundledImage, bundledWidth, bundledHeight, gridCase[0], gridCase[1], runsCount));
+    }
+
+    report(results);
+  }
+
+  /**
+   * Cuts the image, shuffles the puzzles and solves them the given count of times.
+   */
+  private static Result run(int[] image, int width, int height, int rowCount, int colCount, int runsCount) {
+    final var tileSet = TileSet.cut(image, width, height, rowCount, colCount);
+
+    final var order = new ArrayList<Integer>();
+    for (int i = 0; i < tileSet.size(); i++) {
+      order.add(i);
+    }
+    Collections.shuffle(order, new Random(SEED));
+    final List<int[]> shuffled = new ArrayList<>(tileSet.size());
+    for (var index : order) {
+      shuffled.add(tileSet.tiles().get(index));
+    }
+
+    final var options = SolverOptions.builder().rowsCount(rowCount).columnsCount(colCount).build();
+    var bestNanos = Long.MAX_VALUE;
+    List<Placement> placements = List.of();
+    for (int i = 0; i < runsCount; i++) {
+      final var start = System.nanoTime();
+      placements = new AutomaticImageCollector(shuffled.size(), tileSet.width(), tileSet.height(),
+              (index, buffer) -> shuffled.get(index), options).collectPlacements();
+      bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+    }
+
+    final var places = new int[placements.size()];
+    for (int i = 0; i < places.length; i++) {
+      final var placement = placements.get(i);
+      places[i] = placement.index() < 0 || placement.rotation() != 0 ? -1 : order.get(placement.index());
+    }
+    return new Result(directAccuracy(places), neighbourAccuracy(places, rowCount, colCount),
+            bestNanos / NANOS_IN_MILLI);
+  }
+
+  /**
+   * @param places original index of the puzzle at every place, -1 marks an empty or rotated one
+   */
+  private static double directAccuracy(int[] places) {
+    var rightCount = 0;
+    for (int i = 0; i < places.length; i++) {
+      if (places[i] == i) {
+        rightCount++;
+      }
+    }
+    return (double) rightCount / places.length;
+  }
+
+  private static double neighbourAccuracy(int[] places, int rowCount, int colCount) {
+    var rightCount = 0;
+    for (int row = 0; row < rowCount; row++) {
+      for (int col = 0; col < colCount; col++) {
+        final var place = places[row * colCount + col];
+        if (place < 0) {
+          continue;
+        }
+        if (col + 1 < colCount && place % colCount + 1 < colCount && places[row * colCount + col + 1] == place + 1) {
+          rightCount++;
+        }
+        if (row + 1 < rowCount && places[(row + 1) * colCount + col] == place + colCount) {
+          rightCount++;
+        }
+      }
+    }
+    final var pairsCount = rowCount * (colCount - 1) + (rowCount - 1) * colCount;
+    return (double) rightCount / pairsCount;
+  }
+
+  /**
+   * Puts tiles of the same size back into a single image.
+   */
+  private static int[] assemble(TileSet tileSet, int colCount) {
+    final var width = colCount * tileSet.width();
+    final var rowCount = (tileSet.size() + colCount - 1) / colCount;
+    final var pixels = new int[width * rowCount * tileSet.height()];
+    for (int i = 0; i < tileSet.size(); i++) {
+      var offset = i / colCount * tileSet.height() * width + i % colCount * tileSet.width();
+      for (int row = 0; row < tileSet.height(); row++, offset += width) {
+        System.arraycopy(tileSet.tiles().get(i), row * tileSet.width(), pixels, offset, tileSet.width());
+      }
+    }
+    return pixels;
+  }
+
+  private static void report(TreeMap<String, Result> results) {
+    System.out.printf(Locale.ROOT, "%-28s %10s %8s %10s%n", "case", "ms", "direct", "neighbour");
+    for (var entry : results.entrySet()) {
+      final var result = entry.getValue();
+      System.out.printf(Locale.ROOT, "%-28s %10.1f %8.4f %10.4f%n", entry.getKey(), result.millis(),
+              result.directAccuracy(), result.neighbourAccuracy());
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package com.task.testtask.benchmarks;
+
+import com.task.testtask.saving.TileSet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * It's a generator of deterministic puzzle sets, so every run of the benchmarks works on the same pixels.
+ * <p>The image is a sum of a few low-frequency waves with a weak ramp on top, it's smooth enough for the solver to
+ * find neighbours and has no flat areas that would make scores equal.</p>
+ */
+public class SyntheticPuzzles {
+  private static final int WAVES_COUNT = 12;
+  private static final int CHANNELS_COUNT = 3;
+
+  private SyntheticPuzzles() {
+
+  }
+
+  /**
+   * @return ARGB pixels of the image in the row-major order
+   */
+  public static int[] image(int width, int height, long seed) {
+    final var random = new Random(seed);
+    final var waves = new double[WAVES_COUNT][4];
+    for (var wave : waves) {
+      wave[0] = random.nextDouble() * 0.05;
+      wave[1] = random.nextDouble() * 0.05;
+      wave[2] = random.nextDouble() * 6;
+      wave[3] = random.nextDouble();
+    }
+
+    final var pixels = new int[width * height];
+    final var channels = new double[CHANNELS_COUNT];
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        channels[0] = 0;
+        channels[1] = 0;
+        channels[2] = 0;
+        for (int i = 0; i < WAVES_COUNT; i++) {
+          channels[i % CHANNELS_COUNT] += Math.sin(x * waves[i][0] + y * waves[i][1] + waves[i][2]) * waves[i][3];
+        }
+        final var red = clamp(128 + 40 * channels[0] + 0.3 * (x % 97));
+        final var green = clamp(128 + 40 * channels[1] + 0.2 * (y % 89));
+        final var blue = clamp(128 + 40 * channels[2]);
+        pixels[y * width + x] = 0xff000000 | red << 16 | green << 8 | blue;
+      }
+    }
+    return pixels;
+  }
+
+  /**
+   * Cuts the generated image into square tiles and shuffles them.
+   */
+  public static TileSet shuffledTiles(int rowCount, int colCount, int tileSize, long seed) {
+    final var width = colCount * tileSize;
+    final var height = rowCount * tileSize;
+    final var tileSet = TileSet.cut(image(width, height, seed), width, height, rowCount, colCount);
+
+    final List<int[]> tiles = new ArrayList<>(tileSet.tiles());
+    Collections.shuffle(tiles, new Random(seed));
+    return new TileSet(tileSet.width(), tileSet.height(), tiles);
+  }
+
+  private static int clamp(double value) {
+    return (int) Math.max(0, Math.min(255, value));
+  }
+}
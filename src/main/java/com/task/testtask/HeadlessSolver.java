@@ -0,0 +1,220 @@
+package com.task.testtask;
+
+import com.task.testtask.enums.ScoreMetric;
+import com.task.testtask.enums.SolverPhase;
+import com.task.testtask.main.AutomaticImageCollector;
+import com.task.testtask.saving.PuzzleSet;
+import com.task.testtask.saving.TileSet;
+import com.task.testtask.solver.Placement;
+import com.task.testtask.solver.SolverMetrics;
+import com.task.testtask.solver.SolverOptions;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * It's a command-line entry point that solves puzzles without any display.
+ * <p>Each argument that isn't an option is a directory with tiles named {@code image_1.png}, {@code image_2.png}
+ * and so on, or a puzzle set file with the {@code .pzs} extension. Edge descriptors stored in the puzzle set are used
+ * as they are, so the pixels of such a set aren't touched at all. For each directory one JSON line with the order,
+ * rotations and timings is written to the standard output or to the file given with {@code --output}. All
+ * diagnostics go to the standard error, so the output can be piped straight into other tools.</p>
+ * <p>Options: {@code --rotation}, {@code --metric MEAN_COLOR|PIXEL_DISSIMILARITY}, {@code --parallelism N},
+ * {@code --dense-limit N}, {@code --grid ROWSxCOLUMNS}, {@code --metrics}, {@code --output FILE}. With
+ * {@code --metrics} every line also contains the phase timings and counters of the solver. The grid is square by
+ * default, a puzzle set file brings its own grid unless {@code --grid} is given. Wrong arguments print the usage
+ * and exit with the status 1.</p>
+ */
+public class HeadlessSolver {
+  private static final double NANOS_IN_MILLI = 1_000_000.0;
+  private static final String USAGE = "Usage: HeadlessSolver [--rotation] [--metric METRIC] [--parallelism N] " +
+          "[--dense-limit N] [--grid ROWSxCOLUMNS] [--metrics] [--output FILE] DIRECTORY...";
+
+  private HeadlessSolver() {
+
+  }
+
+  public static void main(String[] args) throws IOException {
+    System.setProperty("java.awt.headless", "true");
+
+    final var optionsBuilder = SolverOptions.builder();
+    final var directories = new ArrayList<Path>();
+    Path outputFile = null;
+    var withMetrics = false;
+
+    try {
+      for (int i = 0; i < args.length; i++) {
+        switch (args[i]) {
+          case "--rotation" -> optionsBuilder.rotationAware(true);
+          case "--metric" -> optionsBuilder.metric(parseMetric(valueOf(args, ++i)));
+          case "--parallelism" -> optionsBuilder.parallelism(parseCount(args, ++i, 1));
+          case "--dense-limit" -> optionsBuilder.denseMatrixLimit(parseCount(args, ++i, 0));
+          case "--grid" -> {
+            final var grid = valueOf(args, ++i).split("x");
+            if (grid.length != 2) {
+              throw new IllegalArgumentException("Grid must look like ROWSxCOLUMNS: " + args[i]);
+            }
+            optionsBuilder.rowsCount(parseCount(grid[0], "--grid", 1))
+                    .columnsCount(parseCount(grid[1], "--grid", 1));
+          }
+          case "--metrics" -> withMetrics = true;
+          case "--output" -> outputFile = Path.of(valueOf(args, ++i));
+          default -> {
+            if (args[i].startsWith("--")) {
+              throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+            directories.add(Path.of(args[i]));
+          }
+        }
+      }
+      if (directories.isEmpty()) {
+        throw new IllegalArgumentException("No directory is given");
+      }
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.println(USAGE);
+      System.exit(1);
+    }
+
+    final var options = optionsBuilder.build();
+    final var output = outputFile == null ?
+            System.out :
+            new PrintStream(Files.newOutputStream(outputFile), false, StandardCharsets.UTF_8);
+
+    try {
+      for (var directory : directories) {
+        output.println(solve(directory, options, withMetrics));
+      }
+    } finally {
+      output.flush();
+      if (output != System.out) {
+        output.close();
+      }
+    }
+  }
+
+  /**
+   * @param index index of the value that follows the option
+   * @return value of the option
+   */
+  private static String valueOf(String[] args, int index) {
+    if (index >= args.length) {
+      throw new IllegalArgumentException("Option " + args[index - 1] + " needs a value");
+    }
+    return args[index];
+  }
+
+  private static int parseCount(String[] args, int index, int minimum) {
+    return parseCount(valueOf(args, index), args[index - 1], minimum);
+  }
+
+  private static int parseCount(String value, String option, int minimum) {
+    try {
+      final var count = Integer.parseInt(value);
+      if (count < minimum) {
+        throw new IllegalArgumentException("Option " + option + " must be at least " + minimum + ": " + value);
+      }
+      return count;
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Option " + option + " needs a number: " + value);
+    }
+  }
+
+  private static ScoreMetric parseMetric(String value) {
+    try {
+      return ScoreMetric.valueOf(value);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Unknown metric " + value);
+    }
+  }
+
+  private static String solve(Path directory, SolverOptions options, boolean withMetrics) {
+    final var loadStart = System.nanoTime();
+    final AutomaticImageCollector collector;
+    final int tilesCount;
+    if (directory.toString().endsWith("." + PuzzleSet.FILE_EXTENSION)) {
+      final var puzzleSet = readPuzzleSet(directory);
+      final var setOptions = options.getRowsCount() > 0 ?
+              options :
+              options.toBuilder()
+                      .rowsCount(puzzleSet.getRowsCount())
+                      .columnsCount(puzzleSet.getColumnsCount())
+                      .build();
+      collector = puzzleSet.getEdgeDescriptors() == null ?
+              new AutomaticImageCollector(puzzleSet.size(), puzzleSet.getTileWidth(), puzzleSet.getTileHeight(),
+                      puzzleSet.getPixelSource(), setOptions) :
+              new AutomaticImageCollector(puzzleSet.getEdgeDescriptors(), setOptions);
+      tilesCount = puzzleSet.size();
+    }
+    else {
+      final var tileSet = TileSet.readDirectory(directory);
+      collector = new AutomaticImageCollector(tileSet.size(), tileSet.width(), tileSet.height(),
+              (index, buffer) -> tileSet.tiles().get(index), options);
+      tilesCount = tileSet.size();
+    }
+    final var solveStart = System.nanoTime();
+
+    final var placements = collector.collectPlacements();
+    final var solveEnd = System.nanoTime();
+
+    final var loadMillis = (solveStart - loadStart) / NANOS_IN_MILLI;
+    final var solveMillis = (solveEnd - solveStart) / NANOS_IN_MILLI;
+    System.err.printf("%s: %d tiles, load %.1f ms, solve %.1f ms%n", directory, tilesCount,
+            loadMillis, solveMillis);
+    return toJson(directory, placements, loadMillis, solveMillis, withMetrics ? collector.getMetrics() : null);
+  }
+
+  private static PuzzleSet readPuzzleSet(Path file) {
+    try {
+      return PuzzleSet.read(file);
+    } catch (IOException e) {
+      throw new RuntimeException("Error reading puzzle set: " + e.getMessage());
+    }
+  }
+
+  private static String toJson(Path directory, List<Placement> placements, double loadMillis, double solveMillis,
+                               SolverMetrics metrics) {
+    final var json = new StringBuilder();
+    json.append("{\"directory\":\"").append(escape(directory.toString())).append("\",\"order\":[");
+    for (int i = 0; i < placements.size(); i++) {
+      json.append(i == 0 ? "" : ",").append(placements.get(i).index());
+    }
+    json.append("],\"rotation\":[");
+    for (int i = 0; i < placements.size(); i++) {
+      json.append(i == 0 ? "" : ",").append(placements.get(i).rotation());
+    }
+    json.append(String.format(Locale.ROOT, "],\"loadMillis\":%.3f,\"solveMillis\":%.3f", loadMillis, solveMillis));
+    if (metrics != null) {
+      json.append(",\"metrics\":{");
+      for (var phase : SolverPhase.values()) {
+        json.append(String.format(Locale.ROOT, "\"%sMillis\":%.3f,", toCamelCase(phase.name()),
+                metrics.getPhaseNanos(phase) / NANOS_IN_MILLI));
+      }
+      json.append("\"comparisons\":").append(metrics.getComparisons())
+              .append(",\"acceptedLinks\":").append(metrics.getAcceptedLinks())
+              .append(",\"rejectedLinks\":").append(metrics.getRejectedLinks())
+              .append(",\"skippedLinks\":").append(metrics.getSkippedLinks())
+              .append('}');
+    }
+    return json.append('}').toString();
+  }
+
+  private static String toCamelCase(String constantName) {
+    final var words = constantName.toLowerCase(Locale.ROOT).split("_");
+    final var result = new StringBuilder(words[0]);
+    for (int i = 1; i < words.length; i++) {
+      result.append(Character.toUpperCase(words[i].charAt(0))).append(words[i].substring(1));
+    }
+    return result.toString();
+  }
+
+  private static String escape(String value) {
+    return value.replace("\\", "\\\\").replace("\"", "\\\"");
+  }
+}
@@ -0,0 +1,85 @@
+package com.task.testtask;
+
+import com.task.testtask.main.AutomaticImageCollector;
+import com.task.testtask.saving.PuzzleSet;
+import com.task.testtask.saving.TileSet;
+import com.task.testtask.solver.EdgeDescriptors;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * It's a command-line tool that converts a directory of tiles into a single puzzle set file.
+ * <p>Arguments: {@code SOURCE_DIRECTORY TARGET_FILE [--grid ROWSxCOLUMNS] [--no-descriptors] [--no-truth]}. The grid
+ * is square by default. The game saves tiles in the right order, so the identity order is stored as the ground truth
+ * unless {@code --no-truth} is given. Edge descriptors are extracted the same way the solver does it, so solving the
+ * set later starts right from the scoring.</p>
+ */
+public class PuzzleSetConverter {
+  private PuzzleSetConverter() {
+
+  }
+
+  public static void main(String[] args) throws IOException {
+    System.setProperty("java.awt.headless", "true");
+
+    Path source = null;
+    Path target = null;
+    var rowsCount = 0;
+    var columnsCount = 0;
+    var withDescriptors = true;
+    var withTruth = true;
+
+    for (int i = 0; i < args.length; i++) {
+      switch (args[i]) {
+        case "--grid" -> {
+          final var grid = args[++i].split("x");
+          rowsCount = Integer.parseInt(grid[0]);
+          columnsCount = Integer.parseInt(grid[1]);
+        }
+        case "--no-descriptors" -> withDescriptors = false;
+        case "--no-truth" -> withTruth = false;
+        default -> {
+          if (source == null) {
+            source = Path.of(args[i]);
+          }
+          else {
+            target = Path.of(args[i]);
+          }
+        }
+      }
+    }
+
+    if (source == null || target == null) {
+      System.err.println("Usage: PuzzleSetConverter [--grid ROWSxCOLUMNS] [--no-descriptors] [--no-truth] " +
+              "SOURCE_DIRECTORY TARGET_FILE");
+      System.exit(1);
+    }
+
+    final var tileSet = TileSet.readDirectory(source);
+    if (rowsCount == 0) {
+      rowsCount = (int) Math.ceil(Math.sqrt(tileSet.size()));
+      columnsCount = (tileSet.size() + rowsCount - 1) / rowsCount;
+    }
+    if (rowsCount * columnsCount != tileSet.size()) {
+      throw new IllegalArgumentException("Grid " + rowsCount + "x" + columnsCount + " doesn't fit " +
+              tileSet.size() + " tiles");
+    }
+
+    final var edgeDescriptors = withDescriptors ?
+            new EdgeDescriptors(tileSet.size(), tileSet.width(), tileSet.height(),
+                    AutomaticImageCollector.BORDER_THICKNESS, (index, buffer) -> tileSet.tiles().get(index)) :
+            null;
+    int[] truthOrder = null;
+    if (withTruth) {
+      truthOrder = new int[tileSet.size()];
+      for (int i = 0; i < truthOrder.length; i++) {
+        truthOrder[i] = i;
+      }
+    }
+
+    PuzzleSet.write(target, tileSet, rowsCount, columnsCount, edgeDescriptors, truthOrder);
+    System.err.printf("%s: %d tiles %dx%d written to %s%n", source, tileSet.size(), tileSet.width(),
+            tileSet.height(), target);
+  }
+}
@@ -1,43 +1,55 @@
 package com.task.testtask.components;
 
 import com.task.testtask.enums.Direction;
-import com.task.testtask.interfaces.CheckOverlapping;
+import javafx.beans.InvalidationListener;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.value.ChangeListener;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import javafx.scene.transform.Rotate;
+import lombok.AccessLevel;
 import lombok.Getter;
 
 /**
  * This class represents puzzle, that used for constructing final image.
+ * <p>A puzzle is a view of a location of the {@link PuzzleState}, it shows the piece that is there and keeps only
+ * what is needed to drag it.</p>
  */
 @Getter
 public class Puzzle {
   public static final double DEFAULT_OPACITY = 0.5;
-  private static final ObjectProperty<Puzzle> selectedPuzzle = new SimpleObjectProperty<>();
+  private static final ObjectProperty<Puzzle> selectedPuzzle = createSelection();
   private static final ObjectProperty<Boolean> isReleased = new SimpleObjectProperty<>();
 
   private final ObjectProperty<Integer> rotation;
   private final ObjectProperty<Boolean> isActive;
   private final ImageView view;
 
-  private ChangeListener<Boolean> listener;
+  private Tile tile;
+  private int location = PuzzleState.NO_PIECE;
+
   private double xOffset;
   private double yOffset;
   private double originPosX;
   private double originPosY;
   private Direction direction;
 
+  @Getter(AccessLevel.NONE)
+  private final double[] globalCords = new double[4];
+  @Getter(AccessLevel.NONE)
+  private boolean globalCordsValid;
+
   /**
    * This constructor used to create puzzles that located in the PuzzlePanel.
    *
-   * @param image the image of the puzzle
+   * @param tile the tile of the image that is shown by the puzzle
    */
-  public Puzzle(Image image) {
+  public Puzzle(Tile tile) {
     rotation = new SimpleObjectProperty<>();
     isActive = new SimpleObjectProperty<>();
-    view = new ImageView(image);
+    view = new ImageView();
+    setTile(tile);
+    invalidateGlobalCordsListener();
 
     view.setOpacity(DEFAULT_OPACITY);
     direction = Direction.TOP;
@@ -57,6 +69,7 @@ public class Puzzle {
     rotation = new SimpleObjectProperty<>();
     isActive = new SimpleObjectProperty<>();
     view = new ImageView();
+    invalidateGlobalCordsListener();
 
     view.setX(x);
     view.setY(y);
@@ -67,23 +80,34 @@ public class Puzzle {
     addAllListeners();
   }
 
+  public static Puzzle getSelectedPuzzle() {
+    return selectedPuzzle.get();
+  }
+
   /**
-   * It's copy constructor
-   * @param puzzle {@link Puzzle} which values we want to copy
+   * Forgets the selected puzzle, it's called when the puzzles are thrown away, so the buttons don't change the state
+   * through a puzzle that isn't shown anymore.
    */
-  public Puzzle(Puzzle puzzle) {
-    this.isActive = new SimpleObjectProperty<>();
-    this.rotation = new SimpleObjectProperty<>(puzzle.rotation.get());
-    this.view = new ImageView(puzzle.view.getImage());
-    this.xOffset = puzzle.xOffset;
-    this.yOffset = puzzle.yOffset;
-    this.originPosX = puzzle.originPosX;
-    this.originPosY = puzzle.originPosY;
-    this.direction = puzzle.direction;
+  public static void clearSelection() {
+    selectedPuzzle.set(null);
   }
 
-  public static Puzzle getSelectedPuzzle() {
-    return selectedPuzzle.get();
+  /**
+   * Creates the selection with a single listener for all puzzles. Only the puzzle that lost the selection and the one
+   * that got it change their opacity, so a press costs the same on any grid, and puzzles that are thrown away on
+   * restart leave nothing registered.
+   */
+  private static ObjectProperty<Puzzle> createSelection() {
+    final var selection = new SimpleObjectProperty<Puzzle>();
+    selection.addListener((observableValue, oldValue, newValue) -> {
+      if (oldValue != null && oldValue.isActive.get()) {
+        oldValue.view.setOpacity(DEFAULT_OPACITY);
+      }
+      if (newValue != null) {
+        newValue.view.setOpacity(1);
+      }
+    });
+    return selection;
   }
 
   public void changePos(int x, int y) {
@@ -125,8 +149,8 @@ public class Puzzle {
     return view.getY();
   }
 
-  public Image getImage() {
-    return view.getImage();
+  public Tile getTile() {
+    return tile;
   }
 
   public void setWidth(double width) {
@@ -151,17 +175,57 @@ public class Puzzle {
     isActive.set(value);
   }
 
-  public void setImage(Image image) {
-    view.imageProperty().set(image);
+  /**
+   * Binds the puzzle to the location of the state, the puzzle has to be shown again with {@link #show(PuzzleState)}.
+   */
+  public void setLocation(int location) {
+    this.location = location;
   }
 
   /**
-   * This method calculates the start and end global coordinates of the current puzzle taking into account direction of
-   * that puzzle.
+   * Shows the piece that is at the location of the puzzle in the state together with its rotation.
+   */
+  public void show(PuzzleState state) {
+    final var transforms = view.getTransforms();
+    transforms.clear();
+    setTile(state.getTile(location));
+    setRotation(state.getRotation(location));
+    transforms.add(new Rotate(getRotation(), getCenterX(), getCenterY()));
+  }
+
+  /**
+   * Shows the tile, the view points at the region of the shared source image, so no pixels are copied. The region is
+   * taken from the smallest level of the {@link TilePyramid} that covers the size of the view.
    *
-   * @return array with the global coordinates of the puzzle
+   * @param tile the tile to show, null clears the puzzle
+   */
+  public void setTile(Tile tile) {
+    this.tile = tile;
+    showTile();
+  }
+
+  private void showTile() {
+    final var shownTile = tile == null ? null : tile.forDisplay(view.getFitWidth(), view.getFitHeight());
+    view.imageProperty().set(shownTile == null ? null : shownTile.image());
+    view.setViewport(shownTile == null ? null : shownTile.viewport());
+  }
+
+  /**
+   * Returns the start and end global coordinates of the current puzzle taking into account direction of that puzzle.
+   * <p>The coordinates are cached and calculated again only after the layout, the transforms of the puzzle or of any
+   * of its parents, or the rotation were changed, so reading them doesn't allocate anything.</p>
+   *
+   * @return array with the global coordinates of the puzzle, it's shared and must not be changed
    */
   public double[] calculateGlobalCords() {
+    if (!globalCordsValid) {
+      updateGlobalCords();
+      globalCordsValid = true;
+    }
+    return globalCords;
+  }
+
+  private void updateGlobalCords() {
     final var puzzle = this;
 
     double startX = 0;
@@ -172,7 +236,8 @@ public class Puzzle {
     double width = puzzle.getWidth();
     double height = puzzle.getHeight();
 
-    var globalPosition = puzzle.getView().localToScene(
+    // the transform is read through its property, so the property becomes valid again and reports the next change
+    var globalPosition = puzzle.getView().getLocalToSceneTransform().transform(
             puzzle.getView().getLayoutBounds().getMinX(),
             puzzle.getView().getLayoutBounds().getMinY());
 
@@ -208,30 +273,43 @@ public class Puzzle {
       endY = globalPosition.getY() + height;
     }
 
-    return new double[] {startX, startY, endX, endY};
+    globalCords[0] = startX;
+    globalCords[1] = startY;
+    globalCords[2] = endX;
+    globalCords[3] = endY;
+  }
+
+  /**
+   * The transform to the scene already includes the transforms of the puzzle and of all its parents, so resizes of
+   * the window are caught as well.
+   */
+  private void invalidateGlobalCordsListener() {
+    final InvalidationListener listener = observable -> globalCordsValid = false;
+    view.layoutBoundsProperty().addListener(listener);
+    view.localToSceneTransformProperty().addListener(listener);
+
+    final InvalidationListener sizeListener = observable -> showTile();
+    view.fitWidthProperty().addListener(sizeListener);
+    view.fitHeightProperty().addListener(sizeListener);
   }
 
   public void addAllListeners() {
     mousePressedListener();
     dragPuzzleListener();
     returnToOriginPosListener();
-    checkPuzzleSelection();
     checkChangeInRotation();
     checkIsActive();
   }
 
-  public void checkIfPuzzlesOverlapListener(double[] rec1, CheckOverlapping checkOverlapping) {
-    listener = (observableValue, oldValue, newValue) -> {
-      if (selectedPuzzle.get() != this) {
-        final var rec2 = selectedPuzzle.get().calculateGlobalCords();
-        checkOverlapping.checkRectanglesOverlap(rec1, rec2);
-        isReleased.set(false);
-      }
-    };
+  /**
+   * Adds a listener that is notified with true once after any active puzzle is released, the released puzzle is the
+   * selected one and it's still at the place where it was dropped.
+   */
+  public static void addReleaseListener(ChangeListener<Boolean> listener) {
     isReleased.addListener(listener);
   }
 
-  public void removeCheckOverlapListener() {
+  public static void removeReleaseListener(ChangeListener<Boolean> listener) {
     isReleased.removeListener(listener);
   }
 
@@ -241,6 +319,7 @@ public class Puzzle {
         rotation.set(0);
       }
       updateDirection(rotation.get());
+      globalCordsValid = false;
     });
   }
 
@@ -271,15 +350,6 @@ public class Puzzle {
     });
   }
 
-  private void checkPuzzleSelection() {
-    selectedPuzzle.addListener((observableValue, oldValue, newValue) -> {
-      if (isActive.get() && selectedPuzzle.get() != null) {
-        view.setOpacity(DEFAULT_OPACITY);
-        selectedPuzzle.get().getView().setOpacity(1);
-      }
-    });
-  }
-
   private void dragPuzzleListener() {
     view.setOnMouseDragged(e -> {
       if (isActive.get()) {
@@ -296,6 +366,7 @@ public class Puzzle {
 
         view.setX(originPosX);
         view.setY(originPosY);
+        isReleased.set(false);
       }
     });
   }
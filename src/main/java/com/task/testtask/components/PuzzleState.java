@@ -0,0 +1,201 @@
+package com.task.testtask.components;
+
+import com.task.testtask.interfaces.PixelSource;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * It's the state of a game kept in primitive arrays, puzzles on the screen only show it.
+ * <p>Every place a puzzle can be at is a location: locations from 0 to {@link #getSlotsCount()} are the places of
+ * the image in the row-major order, the next {@link #getPiecesCount()} locations are the places of the tray. For
+ * every location the index of the piece and its rotation are kept, for every piece its location is kept, so moves
+ * and lookups are O(1) and nothing but the arrays is allocated.</p>
+ * <p>A piece is the index of its tile in the cut image, so the piece {@code i} is right when it's at the location
+ * {@code i} without rotation. The count of right pieces is updated on every change, and the state doesn't use any
+ * JavaFX node, so the solver, the check and export work with it without a display.</p>
+ */
+public class PuzzleState {
+  public static final int NO_PIECE = -1;
+  private static final int FULL_ANGLE = 360;
+
+  private final List<Tile> tiles;
+  private final int rowsCount;
+  private final int columnsCount;
+  private final int slotsCount;
+
+  private final int[] pieces;
+  private final int[] rotations;
+  private final int[] locations;
+  private int correctCount;
+
+  /**
+   * Creates a state where all pieces are in the tray in the order of the tiles and the image is empty.
+   *
+   * @param tiles tiles of the cut image in the row-major order, they all have the same size
+   * @param rowsCount it's row count of the image
+   * @param columnsCount it's column count of the image
+   */
+  public PuzzleState(List<Tile> tiles, int rowsCount, int columnsCount) {
+    if ((long) rowsCount * columnsCount < tiles.size()) {
+      throw new IllegalArgumentException(String.format("%d puzzles don't fit into %dx%d grid",
+              tiles.size(), rowsCount, columnsCount));
+    }
+    this.tiles = List.copyOf(tiles);
+    this.rowsCount = rowsCount;
+    this.columnsCount = columnsCount;
+    this.slotsCount = rowsCount * columnsCount;
+    this.pieces = new int[slotsCount + tiles.size()];
+    this.rotations = new int[pieces.length];
+    this.locations = new int[tiles.size()];
+
+    Arrays.fill(pieces, NO_PIECE);
+    for (int i = 0; i < tiles.size(); i++) {
+      pieces[slotsCount + i] = i;
+      locations[i] = slotsCount + i;
+    }
+  }
+
+  public List<Tile> getTiles() {
+    return tiles;
+  }
+
+  public int getPiecesCount() {
+    return locations.length;
+  }
+
+  public int getRowsCount() {
+    return rowsCount;
+  }
+
+  public int getColumnsCount() {
+    return columnsCount;
+  }
+
+  public int getSlotsCount() {
+    return slotsCount;
+  }
+
+  /**
+   * @return location of the place of the tray with the given index
+   */
+  public int trayLocation(int trayIndex) {
+    return slotsCount + trayIndex;
+  }
+
+  /**
+   * @return index of the piece at the location or {@link #NO_PIECE}
+   */
+  public int getPiece(int location) {
+    return pieces[location];
+  }
+
+  /**
+   * @return tile of the piece at the location or null if it's empty
+   */
+  public Tile getTile(int location) {
+    return pieces[location] == NO_PIECE ? null : tiles.get(pieces[location]);
+  }
+
+  /**
+   * @return clockwise rotation of the piece at the location in degrees, it's in [0, 360)
+   */
+  public int getRotation(int location) {
+    return rotations[location];
+  }
+
+  public int getLocation(int piece) {
+    return locations[piece];
+  }
+
+  /**
+   * @return count of pieces that are at their places of the image without rotation
+   */
+  public int getCorrectCount() {
+    return correctCount;
+  }
+
+  public boolean isSolved() {
+    return correctCount == getPiecesCount();
+  }
+
+  /**
+   * Swaps pieces of two locations together with their rotations, any of them can be empty.
+   */
+  public void swap(int first, int second) {
+    if (first == second) {
+      return;
+    }
+    forget(first);
+    forget(second);
+
+    final var piece = pieces[first];
+    final var rotation = rotations[first];
+    pieces[first] = pieces[second];
+    rotations[first] = rotations[second];
+    pieces[second] = piece;
+    rotations[second] = rotation;
+
+    remember(first);
+    remember(second);
+  }
+
+  /**
+   * Rotates the piece at the location, an empty location is left as it is.
+   *
+   * @param angle clockwise angle in degrees, a negative one rotates counterclockwise
+   */
+  public void rotate(int location, int angle) {
+    if (pieces[location] == NO_PIECE) {
+      return;
+    }
+    forget(location);
+    rotations[location] = Math.floorMod(rotations[location] + angle, FULL_ANGLE);
+    remember(location);
+  }
+
+  /**
+   * Moves the piece to the location with the given rotation, the piece that was there goes to the old location of
+   * the moved one.
+   */
+  public void place(int piece, int location, int rotation) {
+    swap(locations[piece], location);
+    rotate(location, rotation - rotations[location]);
+  }
+
+  /**
+   * Shuffles pieces of the tray, the image is left as it is.
+   */
+  public void shuffleTray(Random random) {
+    for (int i = getPiecesCount() - 1; i > 0; i--) {
+      swap(trayLocation(i), trayLocation(random.nextInt(i + 1)));
+    }
+  }
+
+  /**
+   * @return pixels of pieces by their indexes, it can be called from any thread because tiles never change
+   */
+  public PixelSource getPixelSource() {
+    return (index, buffer) -> tiles.get(index).readPixels(buffer);
+  }
+
+  private boolean isCorrect(int location) {
+    return location < slotsCount && pieces[location] == location && rotations[location] == 0;
+  }
+
+  private void forget(int location) {
+    if (isCorrect(location)) {
+      correctCount--;
+    }
+  }
+
+  private void remember(int location) {
+    if (pieces[location] != NO_PIECE) {
+      locations[pieces[location]] = location;
+    }
+    if (isCorrect(location)) {
+      correctCount++;
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package com.task.testtask.components;
+
+import com.task.testtask.utils.PixelUtils;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.Image;
+
+/**
+ * It's a lightweight view into a region of a shared source image, cutting an image into tiles doesn't copy pixels.
+ * <p>Tiles are equal when they show the same region of the same image, so the tile identity survives copies of
+ * puzzles.</p>
+ *
+ * @param image source image that is shared by all tiles cut from it
+ * @param x x coordinate of the left top corner of the region
+ * @param y y coordinate of the left top corner of the region
+ * @param width width of the region
+ * @param height height of the region
+ * @param pyramid downscaled copies of the tiles cut from the image, it may be null
+ */
+public record Tile(Image image, int x, int y, int width, int height, TilePyramid pyramid) {
+
+  /**
+   * Creates a tile without downscaled copies, it's always shown from the source image.
+   */
+  public Tile(Image image, int x, int y, int width, int height) {
+    this(image, x, y, width, height, null);
+  }
+
+  /**
+   * @return tile that shows the whole image
+   */
+  public static Tile of(Image image) {
+    return new Tile(image, 0, 0, (int) image.getWidth(), (int) image.getHeight());
+  }
+
+  /**
+   * @return viewport of the region for {@link javafx.scene.image.ImageView#setViewport(Rectangle2D)}
+   */
+  public Rectangle2D viewport() {
+    return new Rectangle2D(x, y, width, height);
+  }
+
+  /**
+   * @param width width the tile is shown with, 0 means the natural size
+   * @param height height the tile is shown with, 0 means the natural size
+   * @return the smallest copy of the tile in its {@link TilePyramid} that still covers the size, or the tile itself
+   */
+  public Tile forDisplay(double width, double height) {
+    return pyramid == null ? this : pyramid.forDisplay(this, width, height);
+  }
+
+  /**
+   * Reads pixels of the region straight from the source image.
+   *
+   * @param buffer a buffer to reuse, a new one is allocated if it's null or too small
+   * @return ARGB pixels of the region in the row-major order with the stride equal to the width
+   */
+  public int[] readPixels(int[] buffer) {
+    return PixelUtils.readPixels(image, x, y, width, height, buffer);
+  }
+}
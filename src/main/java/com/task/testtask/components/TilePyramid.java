@@ -0,0 +1,88 @@
+package com.task.testtask.components;
+
+import com.task.testtask.utils.PixelUtils;
+import javafx.scene.image.Image;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * It's a chain of downscaled copies of a grid of tiles, every level halves each tile of the previous one.
+ * <p>Each tile is halved on its own, so the tiles of every level stay on the grid and never take colors from their
+ * neighbours. The pyramid belongs to the tiles cut from the source: it's given to them on creation and goes away
+ * together with them.</p>
+ * <p>Tiles keep pointing at the full resolution source, because the solver, the correctness check and export read
+ * the original pixels, so the levels take about a third more heap on top of the source. What they save is textures:
+ * views ask for the smallest level that is still at least as big as the view, so the source is never uploaded for
+ * views smaller than the tiles.</p>
+ */
+public class TilePyramid {
+  private static final int MAX_LEVELS_COUNT = 5;
+  private static final int MIN_TILE_SIZE = 8;
+
+  private final List<Image> levels;
+  private final int[] tileWidths;
+  private final int[] tileHeights;
+
+  private TilePyramid(List<Image> levels, int[] tileWidths, int[] tileHeights) {
+    this.levels = levels;
+    this.tileWidths = tileWidths;
+    this.tileHeights = tileHeights;
+  }
+
+  /**
+   * Creates levels for the source image that holds the grid of tiles without gaps, the first tile is at the left top
+   * corner.
+   *
+   * @param tileWidth width of the tiles cut from the image
+   * @param tileHeight height of the tiles cut from the image
+   * @return pyramid that has to be given to the tiles cut from the image
+   */
+  public static TilePyramid build(Image source, int columnsCount, int rowsCount, int tileWidth, int tileHeight) {
+    final var levels = new ArrayList<Image>();
+    final var tileWidths = new int[MAX_LEVELS_COUNT];
+    final var tileHeights = new int[MAX_LEVELS_COUNT];
+    levels.add(source);
+    tileWidths[0] = tileWidth;
+    tileHeights[0] = tileHeight;
+
+    while (levels.size() < MAX_LEVELS_COUNT) {
+      final var level = levels.size();
+      final var width = tileWidths[level - 1];
+      final var height = tileHeights[level - 1];
+      if (Math.min(width, height) / 2 < MIN_TILE_SIZE) {
+        break;
+      }
+      levels.add(PixelUtils.downscaleTilesByHalf(levels.get(level - 1), columnsCount, rowsCount, width, height));
+      tileWidths[level] = (width + 1) / 2;
+      tileHeights[level] = (height + 1) / 2;
+    }
+    return new TilePyramid(levels, tileWidths, tileHeights);
+  }
+
+  /**
+   * Finds the smallest copy of the tile that still covers the given size.
+   *
+   * @param tile tile cut from the source of this pyramid
+   * @param width width the tile is shown with, 0 means the natural size
+   * @param height height the tile is shown with, 0 means the natural size
+   * @return the same tile in a downscaled image, or the tile itself if no level is small enough
+   */
+  public Tile forDisplay(Tile tile, double width, double height) {
+    if (width <= 0 || height <= 0) {
+      return tile;
+    }
+
+    var level = 0;
+    while (level + 1 < levels.size() && tileWidths[level + 1] >= width && tileHeights[level + 1] >= height) {
+      level++;
+    }
+    if (level == 0) {
+      return tile;
+    }
+    final var column = tile.x() / tileWidths[0];
+    final var row = tile.y() / tileHeights[0];
+    return new Tile(levels.get(level), column * tileWidths[level], row * tileHeights[level], tileWidths[level],
+            tileHeights[level]);
+  }
+}
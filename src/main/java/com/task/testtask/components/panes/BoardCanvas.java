@@ -0,0 +1,178 @@
+package com.task.testtask.components.panes;
+
+import com.task.testtask.components.Puzzle;
+import com.task.testtask.components.TilePyramid;
+import javafx.beans.InvalidationListener;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.input.MouseEvent;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * It's a renderer that paints all blocks of the image construction pane on a single canvas.
+ * <p>Blocks stay the model: their tiles, rotations and the opacity of their views are painted, but the views are
+ * never added to the scene. Tiles are regions of a shared source image, so every block is a single draw call from
+ * the level of its {@link TilePyramid} that fits the block. A block is painted again only when it changes, and the
+ * block under the mouse is found by arithmetic.</p>
+ * <p>A block is dragged the same way its view would be: it's selected on press, follows the mouse and goes back to its
+ * place on release, the dropped rectangle is given to the drop listener.</p>
+ */
+class BoardCanvas {
+  private static final int NO_BLOCK = -1;
+
+  private final Canvas canvas;
+  private final List<Puzzle> blocks;
+  private final int rowCount;
+  private final int colCount;
+  private final double blockWidth;
+  private final double blockHeight;
+  private final Consumer<double[]> dropListener;
+
+  private int draggedIndex = NO_BLOCK;
+  private double dragX;
+  private double dragY;
+  private double offsetX;
+  private double offsetY;
+
+  /**
+   * @param blocks blocks of the pane in the row-major order
+   * @param dropListener it gets the rectangle of a dropped block in the coordinates of the canvas
+   */
+  BoardCanvas(double width, double height, List<Puzzle> blocks, int rowCount, int colCount,
+              Consumer<double[]> dropListener) {
+    this.canvas = new Canvas(width, height);
+    this.blocks = blocks;
+    this.rowCount = rowCount;
+    this.colCount = colCount;
+    this.blockWidth = width / colCount;
+    this.blockHeight = height / rowCount;
+    this.dropListener = dropListener;
+
+    for (int i = 0; i < blocks.size(); i++) {
+      final var index = i;
+      final InvalidationListener listener = observable -> redrawBlock(index);
+      blocks.get(i).getView().opacityProperty().addListener(listener);
+      blocks.get(i).getView().visibleProperty().addListener(listener);
+    }
+    canvas.setOnMousePressed(this::press);
+    canvas.setOnMouseDragged(this::drag);
+    canvas.setOnMouseReleased(this::release);
+  }
+
+  Canvas getCanvas() {
+    return canvas;
+  }
+
+  /**
+   * Paints the block again, it's called after its tile or rotation was changed.
+   */
+  void redrawBlock(int index) {
+    final var graphics = canvas.getGraphicsContext2D();
+    final var block = blocks.get(index);
+    final var x = block.getX();
+    final var y = block.getY();
+    final var cellWidth = (int) ((index % colCount + 1) * blockWidth) - x;
+    final var cellHeight = (int) ((index / colCount + 1) * blockHeight) - y;
+
+    graphics.save();
+    graphics.beginPath();
+    graphics.rect(x, y, cellWidth, cellHeight);
+    graphics.clip();
+    graphics.clearRect(x, y, cellWidth, cellHeight);
+    if (index != draggedIndex) {
+      drawBlock(block, x, y);
+    }
+    graphics.restore();
+
+    if (draggedIndex != NO_BLOCK) {
+      drawBlock(blocks.get(draggedIndex), dragX, dragY);
+    }
+  }
+
+  void redrawAll() {
+    canvas.getGraphicsContext2D().clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+    for (int i = 0; i < blocks.size(); i++) {
+      redrawBlock(i);
+    }
+  }
+
+  private void drawBlock(Puzzle block, double x, double y) {
+    if (block.getTile() == null || !block.getView().isVisible()) {
+      return;
+    }
+    final var tile = block.getTile().forDisplay(blockWidth, blockHeight);
+    final var graphics = canvas.getGraphicsContext2D();
+    graphics.save();
+    graphics.setGlobalAlpha(block.getView().getOpacity());
+    graphics.translate(x + blockWidth / 2, y + blockHeight / 2);
+    graphics.rotate(block.getRotation());
+    graphics.drawImage(tile.image(), tile.x(), tile.y(), tile.width(), tile.height(),
+            -blockWidth / 2, -blockHeight / 2, blockWidth, blockHeight);
+    graphics.restore();
+  }
+
+  /**
+   * Redraws the blocks covered by the rectangle of a block with the left top corner at the given point.
+   */
+  private void redrawArea(double x, double y) {
+    final var firstRow = Math.max(0, (int) (y / blockHeight));
+    final var lastRow = Math.min(rowCount - 1, (int) ((y + blockHeight) / blockHeight));
+    final var firstCol = Math.max(0, (int) (x / blockWidth));
+    final var lastCol = Math.min(colCount - 1, (int) ((x + blockWidth) / blockWidth));
+    for (int row = firstRow; row <= lastRow; row++) {
+      for (int col = firstCol; col <= lastCol; col++) {
+        redrawBlock(row * colCount + col);
+      }
+    }
+  }
+
+  private int blockAt(double x, double y) {
+    final var col = (int) (x / blockWidth);
+    final var row = (int) (y / blockHeight);
+    if (x < 0 || y < 0 || col >= colCount || row >= rowCount) {
+      return NO_BLOCK;
+    }
+    return row * colCount + col;
+  }
+
+  private void press(MouseEvent event) {
+    final var index = blockAt(event.getX(), event.getY());
+    if (index == NO_BLOCK || !Boolean.TRUE.equals(blocks.get(index).getIsActive().get())) {
+      return;
+    }
+    final var block = blocks.get(index);
+    offsetX = event.getX() - block.getX();
+    offsetY = event.getY() - block.getY();
+    dragX = block.getX();
+    dragY = block.getY();
+    draggedIndex = index;
+    block.makeSelected();
+    redrawBlock(index);
+  }
+
+  private void drag(MouseEvent event) {
+    if (draggedIndex == NO_BLOCK) {
+      return;
+    }
+    final var oldX = dragX;
+    final var oldY = dragY;
+    dragX = event.getX() - offsetX;
+    dragY = event.getY() - offsetY;
+    redrawArea(oldX, oldY);
+    redrawBlock(draggedIndex);
+  }
+
+  private void release(MouseEvent event) {
+    if (draggedIndex == NO_BLOCK) {
+      return;
+    }
+    final var index = draggedIndex;
+    final var x = dragX;
+    final var y = dragY;
+    draggedIndex = NO_BLOCK;
+    redrawArea(x, y);
+    redrawBlock(index);
+    dropListener.accept(new double[] {x, y, x + blockWidth, y + blockHeight});
+  }
+}
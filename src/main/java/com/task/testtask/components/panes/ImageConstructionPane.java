@@ -1,15 +1,26 @@
 package com.task.testtask.components.panes;
 
 import com.task.testtask.components.Puzzle;
+import com.task.testtask.components.PuzzleState;
+import com.task.testtask.enums.RenderMode;
 import com.task.testtask.interfaces.Restartable;
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerWrapper;
+import javafx.beans.value.ChangeListener;
 import javafx.scene.layout.Pane;
-import javafx.scene.transform.Rotate;
 
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * It's a class of a pane that use puzzles to construct an image.
+ * <p>Blocks of the pane form a uniform grid, so the block under a dropped puzzle is found from its coordinates
+ * directly. Only the few blocks covered by the dropped puzzle are tested, however large the board is.</p>
+ * <p>Blocks show the places of the image of the {@link PuzzleState}, the block {@code i} is bound to the location
+ * {@code i}. Moves change the state first, and the state keeps a running count of right pieces, so checking the
+ * image costs nothing and the progress can be shown all the time.</p>
+ * <p>In the {@link RenderMode#CANVAS} mode blocks aren't added to the scene, they're painted on a single canvas by
+ * {@link BoardCanvas}, dragging and rotation work the same way.</p>
  */
 public class ImageConstructionPane implements Restartable {
 
@@ -19,26 +30,48 @@ public class ImageConstructionPane implements Restartable {
   private double reductionFactorY;
 
   private final Pane pane;
-  private final List<Puzzle> rightPuzzlesOrder;
+  private final RenderMode renderMode;
   private final List<Puzzle> puzzles;
+  private final ChangeListener<Boolean> releaseListener;
+  private final ReadOnlyIntegerWrapper correctCount;
 
-  private int startX = 0;
-  private int startY = 0;
+  private PuzzleState state;
+  private int rowCount;
+  private int colCount;
+  private double blockWidth;
+  private double blockHeight;
+  private BoardCanvas boardCanvas;
 
   public ImageConstructionPane(Pane pane) {
+    this(pane, RenderMode.NODES);
+  }
+
+  /**
+   * @param pane it's a pane where blocks are shown
+   * @param renderMode it's a way blocks are shown
+   */
+  public ImageConstructionPane(Pane pane, RenderMode renderMode) {
     this.pane = pane;
+    this.renderMode = renderMode;
     puzzles = new ArrayList<>();
-    rightPuzzlesOrder = new ArrayList<>();
+    correctCount = new ReadOnlyIntegerWrapper();
+    releaseListener = (observableValue, oldValue, newValue) -> {
+      if (Boolean.TRUE.equals(newValue) && Puzzle.getSelectedPuzzle() != null) {
+        dropSelectedPuzzle();
+      }
+    };
+    Puzzle.addReleaseListener(releaseListener);
   }
 
-  public void setRightPuzzlesOrder(List<Puzzle> puzzlesOrder) {
-    for (var puzzle : puzzlesOrder) {
-      rightPuzzlesOrder.add(new Puzzle(puzzle));
+  /**
+   * Binds blocks to the places of the image of the state and shows them, blocks must be created before.
+   */
+  public void setState(PuzzleState state) {
+    this.state = state;
+    for (int i = 0; i < puzzles.size(); i++) {
+      puzzles.get(i).setLocation(i);
     }
-  }
-
-  public List<Puzzle> getRightPuzzlesOrder() {
-    return rightPuzzlesOrder;
+    refresh();
   }
 
   public List<Puzzle> getPuzzles() {
@@ -46,14 +79,48 @@ public class ImageConstructionPane implements Restartable {
   }
 
   public boolean checkConstructedImageCorrectness() {
-    for (int i = 0; i < rightPuzzlesOrder.size(); i++) {
-      var isRightPicture = rightPuzzlesOrder.get(i).getImage() == puzzles.get(i).getImage();
-      var isRightRotation = rightPuzzlesOrder.get(i).getRotation() == puzzles.get(i).getRotation();
-      if (!isRightPicture || !isRightRotation) {
-        return false;
+    return state != null && state.isSolved();
+  }
+
+  /**
+   * @return count of blocks that hold the right tile in the right rotation
+   */
+  public ReadOnlyIntegerProperty correctCountProperty() {
+    return correctCount.getReadOnlyProperty();
+  }
+
+  /**
+   * Shows the block again after its piece or rotation was changed in the state, puzzles that aren't blocks of this
+   * pane only update the count of right pieces.
+   *
+   * @param puzzle it's the changed puzzle
+   */
+  public void refreshBlock(Puzzle puzzle) {
+    if (isBlock(puzzle) && boardCanvas != null) {
+      boardCanvas.redrawBlock(puzzle.getLocation());
+    }
+    correctCount.set(state.getCorrectCount());
+  }
+
+  /**
+   * Shows all blocks again, for example after pieces were placed automatically. Blocks with pieces become active.
+   */
+  public void refresh() {
+    for (var puzzle : puzzles) {
+      puzzle.show(state);
+      if (state.getPiece(puzzle.getLocation()) != PuzzleState.NO_PIECE) {
+        puzzle.setActive(true);
       }
     }
-    return true;
+    if (boardCanvas != null) {
+      boardCanvas.redrawAll();
+    }
+    correctCount.set(state.getCorrectCount());
+  }
+
+  private boolean isBlock(Puzzle puzzle) {
+    return puzzle.getLocation() >= 0 && puzzle.getLocation() < puzzles.size() &&
+            puzzles.get(puzzle.getLocation()) == puzzle;
   }
 
   /**
@@ -63,8 +130,10 @@ public class ImageConstructionPane implements Restartable {
    * @param colCount it's column count
    */
   public void divideOnBlocks(int rowCount, int colCount) {
-    final var blockWidth = pane.getPrefWidth() / colCount;
-    final var blockHeight = pane.getPrefHeight() / rowCount;
+    this.rowCount = rowCount;
+    this.colCount = colCount;
+    blockWidth = pane.getPrefWidth() / colCount;
+    blockHeight = pane.getPrefHeight() / rowCount;
 
     reductionFactorX = blockWidth / DETECTION_ZONE_REDUCTION_FACTOR;
     reductionFactorY = blockHeight / DETECTION_ZONE_REDUCTION_FACTOR;
@@ -72,97 +141,103 @@ public class ImageConstructionPane implements Restartable {
 
     for (int i = 0; i < rowCount; i++) {
       for (int j = 0; j < colCount; j++) {
-        final var puzzle = new Puzzle(startX, startY);
+        final var puzzle = new Puzzle((int) (j * blockWidth), (int) (i * blockHeight));
 
         puzzle.setWidth(blockWidth);
         puzzle.setHeight(blockHeight);
-        pane.getChildren().add(puzzle.getView());
+        if (renderMode == RenderMode.NODES) {
+          pane.getChildren().add(puzzle.getView());
+        }
 
         puzzles.add(puzzle);
-        startX += blockWidth;
-
-        checkOverlappingWithSelectedPuzzle(puzzle);
       }
-      startX = 0;
-      startY += blockHeight;
+    }
+
+    if (renderMode == RenderMode.CANVAS) {
+      boardCanvas = new BoardCanvas(pane.getPrefWidth(), pane.getPrefHeight(), puzzles, rowCount, colCount,
+              rectangle -> dropOnBlocks(rectangle, true));
+      pane.getChildren().add(boardCanvas.getCanvas());
+      boardCanvas.redrawAll();
     }
   }
 
   /**
-   * Changes properties of the puzzles according to the selected puzzle.
+   * Swaps pieces of the puzzle and the selected puzzle in the state and shows both of them again.
    *
    * @param currentPuzzle it's current puzzle
    */
   private void changePropertiesOfOverlappedPuzzles(Puzzle currentPuzzle) {
-    final var curCenterX = currentPuzzle.getCenterX();
-    final var curCenterY = currentPuzzle.getCenterY();
-    final var curTransforms = currentPuzzle.getView().getTransforms();
-
     final var selectedPuzzle = Puzzle.getSelectedPuzzle();
-    final var selectedCenterX = selectedPuzzle.getCenterX();
-    final var selectedCenterY = selectedPuzzle.getCenterY();
-    final var selectedTransforms = selectedPuzzle.getView().getTransforms();
-
-    var tempImage = currentPuzzle.getImage();
-    var tempRotation = currentPuzzle.getRotation();
-
 
-    curTransforms.removeAll(curTransforms);
-    selectedTransforms.removeAll(selectedTransforms);
-
-    currentPuzzle.setImage(selectedPuzzle.getImage());
-    selectedPuzzle.setImage(tempImage);
-
-    currentPuzzle.setRotation(selectedPuzzle.getRotation());
-    curTransforms.add(new Rotate(currentPuzzle.getRotation(), curCenterX, curCenterY));
-
-    selectedPuzzle.setRotation(tempRotation);
-    selectedTransforms.add(new Rotate(selectedPuzzle.getRotation(), selectedCenterX, selectedCenterY));
+    state.swap(selectedPuzzle.getLocation(), currentPuzzle.getLocation());
+    currentPuzzle.show(state);
+    selectedPuzzle.show(state);
 
     currentPuzzle.setActive(true);
     currentPuzzle.makeSelected();
+
+    refreshBlock(currentPuzzle);
+    refreshBlock(selectedPuzzle);
   }
 
   /**
-   * Checks if two puzzles overlapping namely current puzzle with selected one and also changes property of that puzzle.
-   *
-   * @param currentPuzzle it's current puzzle
+   * Drops the selected puzzle at the place where its view was released.
    */
-  private void checkOverlappingWithSelectedPuzzle(Puzzle currentPuzzle) {
-    var curPuzzleCord = currentPuzzle.calculateGlobalCords();
-
-    currentPuzzle.checkIfPuzzlesOverlapListener(curPuzzleCord, ((rec1, rec2) -> {
-      double factorX;
-      double factorY;
-      if (pane == Puzzle.getSelectedPuzzle().getView().getParent()) {
-        factorX = reductionFactorX;
-        factorY = reductionFactorY;
-      }
-      else {
-        factorX = 0;
-        factorY = 0;
-      }
-      boolean widthIsPositive = Math.min(rec1[2] - factorX, rec2[2] - factorX) >
-              Math.max(rec1[0] + factorX, rec2[0] + factorX);
-
-      boolean heightIsPositive = Math.min(rec1[3] - factorY, rec2[3] - factorY) >
-              Math.max(rec1[1] + factorY, rec2[1] + factorY);
+  private void dropSelectedPuzzle() {
+    final var selectedPuzzle = Puzzle.getSelectedPuzzle();
+    final var cords = selectedPuzzle.calculateGlobalCords();
+    final var origin = pane.localToScene(0, 0);
+    dropOnBlocks(new double[] {cords[0] - origin.getX(), cords[1] - origin.getY(), cords[2] - origin.getX(),
+            cords[3] - origin.getY()}, isBlock(selectedPuzzle));
+  }
 
-      if(widthIsPositive && heightIsPositive) {
-        changePropertiesOfOverlappedPuzzles(currentPuzzle);
+  /**
+   * Finds the first block in the row-major order that overlaps the dropped puzzle and swaps them. Only the blocks in
+   * the cells covered by the dropped puzzle are tested.
+   *
+   * @param rectangle start and end coordinates of the dropped puzzle in the coordinates of the pane
+   * @param isFromThisPane true if the dropped puzzle is a block of this pane, the detection zone is reduced then
+   */
+  private void dropOnBlocks(double[] rectangle, boolean isFromThisPane) {
+    final var selectedPuzzle = Puzzle.getSelectedPuzzle();
+    final var factorX = isFromThisPane ? reductionFactorX : 0;
+    final var factorY = isFromThisPane ? reductionFactorY : 0;
+
+    final var startX = rectangle[0] + factorX;
+    final var startY = rectangle[1] + factorY;
+    final var endX = rectangle[2] - factorX;
+    final var endY = rectangle[3] - factorY;
+
+    final var firstRow = Math.max(0, (int) Math.floor(startY / blockHeight));
+    final var lastRow = Math.min(rowCount - 1, (int) Math.floor(endY / blockHeight));
+    final var firstCol = Math.max(0, (int) Math.floor(startX / blockWidth));
+    final var lastCol = Math.min(colCount - 1, (int) Math.floor(endX / blockWidth));
+
+    for (int row = firstRow; row <= lastRow; row++) {
+      for (int col = firstCol; col <= lastCol; col++) {
+        final var block = puzzles.get(row * colCount + col);
+        if (block == selectedPuzzle) {
+          continue;
+        }
+        final var widthIsPositive = Math.min(endX, block.getX() + blockWidth - factorX) >
+                Math.max(startX, block.getX() + factorX);
+        final var heightIsPositive = Math.min(endY, block.getY() + blockHeight - factorY) >
+                Math.max(startY, block.getY() + factorY);
+
+        if (widthIsPositive && heightIsPositive) {
+          changePropertiesOfOverlappedPuzzles(block);
+          return;
+        }
       }
-    }));
+    }
   }
 
   @Override
   public void toDefault() {
-    startX = 0;
-    startY = 0;
-    for (var puzzle : puzzles) {
-      puzzle.removeCheckOverlapListener();
-    }
     pane.getChildren().clear();
     puzzles.clear();
-    rightPuzzlesOrder.clear();
+    boardCanvas = null;
+    state = null;
+    correctCount.set(0);
   }
 }
\ No newline at end of file
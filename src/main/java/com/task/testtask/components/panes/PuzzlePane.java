@@ -1,28 +1,57 @@
 package com.task.testtask.components.panes;
 
 import com.task.testtask.components.Puzzle;
+import com.task.testtask.components.PuzzleState;
+import com.task.testtask.components.Tile;
 import com.task.testtask.interfaces.Restartable;
+import javafx.geometry.Orientation;
+import javafx.scene.control.ScrollBar;
 import javafx.scene.layout.Pane;
 
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 /**
  * It's class of a pane that contains of puzzles.
+ * <p>The pane is virtualized: pieces of the tray are kept in the {@link PuzzleState}, and only a pool of puzzles that
+ * fits into the pane is added to it. When the pane is scrolled, the pooled puzzles are bound to the next locations of
+ * the tray, so the count of nodes depends only on the size of the pane, not on the size of the image.</p>
  */
 public class PuzzlePane implements Restartable {
 
   private static final int STARTED_PUZZLE_POS_X = 5;
   private static final int STARTED_PUZZLE_POS_Y = 5;
   private static final int GAP_LENGTH = 10;
-  private static final int COEFFICIENT = 40;
-
-  private List<Puzzle> puzzles;
+  private static final double MAX_GAP_FRACTION = 0.1;
+  private static final double MIN_PUZZLE_WIDTH = 40;
+  private static final double SCROLL_BAR_WIDTH = 14;
 
   private final Pane pane;
+  private final ScrollBar scrollBar;
+  private final List<Puzzle> pool;
+
+  private PuzzleState state;
+  private int trayColCount;
+  private int visibleRowCount;
+  private int firstVisibleRow;
 
   public PuzzlePane(Pane pane) {
     this.pane = pane;
+    pool = new ArrayList<>();
+    scrollBar = new ScrollBar();
+    scrollBar.setOrientation(Orientation.VERTICAL);
+    scrollBar.setUnitIncrement(1);
+    scrollBar.valueProperty().addListener((observableValue, oldValue, newValue) ->
+            scrollTo((int) Math.round(newValue.doubleValue())));
+    pane.setOnScroll(event -> {
+      if (event.getDeltaY() < 0) {
+        scrollBar.increment();
+      }
+      else if (event.getDeltaY() > 0) {
+        scrollBar.decrement();
+      }
+    });
   }
 
   public Pane getPane() {
@@ -30,47 +59,103 @@ public class PuzzlePane implements Restartable {
   }
 
   /**
-   * This method used to locate puzzles in proper order with right indentations.
+   * This method used to locate puzzles of the tray in proper order with right indentations. Puzzles keep the
+   * proportions of the cells of the image, and gaps shrink together with the puzzles on big grids. When puzzles would
+   * be narrower than {@link #MIN_PUZZLE_WIDTH}, fewer columns are used and the pane can be scrolled.
    *
-   * @param puzzles array of puzzles that would be located on the pane
+   * @param state state of the game, pieces of its tray are shown with their rotations
    */
-  public void addPuzzles(List<Puzzle> puzzles, boolean shuffle) {
-    this.puzzles = puzzles;
-
-    int startX = STARTED_PUZZLE_POS_X;
-    int startY = STARTED_PUZZLE_POS_Y;
-
-    int puzzlesAmountOnRow = (int)Math.ceil(Math.sqrt(puzzles.size()));
-
-    double puzzleWidth =
-            (pane.getPrefWidth() / puzzlesAmountOnRow) - (puzzlesAmountOnRow + 1) * GAP_LENGTH;
-    double puzzleHeight =
-            pane.getPrefHeight() / Math.ceil((double)puzzles.size() / puzzlesAmountOnRow) - GAP_LENGTH;
+  public void addPuzzles(PuzzleState state, boolean shuffle) {
+    this.state = state;
+    final var rowCount = state.getRowsCount();
+    final var colCount = state.getColumnsCount();
+    final var piecesCount = state.getPiecesCount();
 
     if (shuffle) {
-      Collections.shuffle(puzzles);
+      state.shuffleTray(new Random());
     }
 
-    int currentPuzzleAmountOnRow = 0;
-    for (var puzzle : puzzles) {
-      puzzle.getView().setFitWidth(puzzleWidth + COEFFICIENT);
-      puzzle.getView().setFitHeight(puzzleHeight);
-
-      puzzle.changePos(startX, startY);
-      startX += puzzleWidth + GAP_LENGTH + COEFFICIENT;
+    final var availableHeight = pane.getPrefHeight() - STARTED_PUZZLE_POS_Y;
+    final var cellRatio = (availableHeight / rowCount) / ((pane.getPrefWidth() - STARTED_PUZZLE_POS_X) / colCount);
+    var availableWidth = pane.getPrefWidth() - STARTED_PUZZLE_POS_X;
+    trayColCount = Math.min(colCount, Math.max(1, (int) (availableWidth / MIN_PUZZLE_WIDTH)));
+    var cellWidth = availableWidth / trayColCount;
+    var cellHeight = cellWidth * cellRatio;
+    var visibleRows = Math.max(1, (int) (availableHeight / cellHeight));
+    final var trayRowCount = (piecesCount + trayColCount - 1) / trayColCount;
+
+    if (trayRowCount > visibleRows) {
+      availableWidth -= SCROLL_BAR_WIDTH;
+      cellWidth = availableWidth / trayColCount;
+      cellHeight = cellWidth * cellRatio;
+      visibleRows = Math.max(1, (int) (availableHeight / cellHeight));
+    }
+    visibleRowCount = Math.min(visibleRows, trayRowCount);
+    firstVisibleRow = 0;
+
+    final var gapX = Math.min(GAP_LENGTH, cellWidth * MAX_GAP_FRACTION);
+    final var gapY = Math.min(GAP_LENGTH, cellHeight * MAX_GAP_FRACTION);
+    for (int i = 0; i < visibleRowCount * trayColCount; i++) {
+      final var puzzle = new Puzzle((Tile) null);
+      puzzle.getView().setFitWidth(cellWidth - gapX);
+      puzzle.getView().setFitHeight(cellHeight - gapY);
+      puzzle.changePos((int) (STARTED_PUZZLE_POS_X + i % trayColCount * cellWidth),
+              (int) (STARTED_PUZZLE_POS_Y + i / trayColCount * cellHeight));
+      pool.add(puzzle);
       pane.getChildren().add(puzzle.getView());
+      bind(puzzle, i);
+    }
 
-      if (puzzlesAmountOnRow == ++currentPuzzleAmountOnRow) {
-        currentPuzzleAmountOnRow = 0;
-        startX = STARTED_PUZZLE_POS_X;
-        startY += puzzleHeight + GAP_LENGTH;
+    final var maxFirstRow = trayRowCount - visibleRowCount;
+    scrollBar.setVisible(maxFirstRow > 0);
+    scrollBar.setLayoutX(pane.getPrefWidth() - SCROLL_BAR_WIDTH);
+    scrollBar.setPrefSize(SCROLL_BAR_WIDTH, pane.getPrefHeight());
+    scrollBar.setMax(Math.max(maxFirstRow, 0));
+    scrollBar.setVisibleAmount(maxFirstRow * (double) visibleRowCount / trayRowCount);
+    scrollBar.setBlockIncrement(visibleRowCount);
+    scrollBar.setValue(0);
+    pane.getChildren().add(scrollBar);
+  }
+
+  /**
+   * Shows the state again, for example after pieces were placed on the image automatically.
+   */
+  public void refresh() {
+    for (var puzzle : pool) {
+      if (puzzle.getView().isVisible()) {
+        puzzle.show(state);
       }
     }
   }
 
+  private void scrollTo(int row) {
+    if (row == firstVisibleRow || pool.isEmpty()) {
+      return;
+    }
+    firstVisibleRow = row;
+    for (int i = 0; i < pool.size(); i++) {
+      bind(pool.get(i), firstVisibleRow * trayColCount + i);
+    }
+  }
+
+  private void bind(Puzzle puzzle, int index) {
+    if (index >= state.getPiecesCount()) {
+      puzzle.getView().getTransforms().clear();
+      puzzle.setLocation(PuzzleState.NO_PIECE);
+      puzzle.setTile(null);
+      puzzle.setRotation(0);
+      puzzle.getView().setVisible(false);
+      return;
+    }
+    puzzle.setLocation(state.trayLocation(index));
+    puzzle.show(state);
+    puzzle.getView().setVisible(true);
+  }
+
   @Override
   public void toDefault() {
     pane.getChildren().clear();
-    puzzles.clear();
+    pool.clear();
+    state = null;
   }
 }
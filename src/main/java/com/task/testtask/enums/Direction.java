@@ -4,5 +4,30 @@ public enum Direction {
   LEFT,
   RIGHT,
   TOP,
-  BOTTOM
+  BOTTOM;
+
+  private static final Direction[] CLOCKWISE_ORDER = {TOP, RIGHT, BOTTOM, LEFT};
+
+  public Direction opposite() {
+    return switch (this) {
+      case LEFT -> RIGHT;
+      case RIGHT -> LEFT;
+      case TOP -> BOTTOM;
+      case BOTTOM -> TOP;
+    };
+  }
+
+  /**
+   * @param quarterTurns count of 90 degree turns, negative values turn counterclockwise
+   * @return direction that this one becomes after turning clockwise
+   */
+  public Direction rotateClockwise(int quarterTurns) {
+    final var index = switch (this) {
+      case TOP -> 0;
+      case RIGHT -> 1;
+      case BOTTOM -> 2;
+      case LEFT -> 3;
+    };
+    return CLOCKWISE_ORDER[Math.floorMod(index + quarterTurns, CLOCKWISE_ORDER.length)];
+  }
 }
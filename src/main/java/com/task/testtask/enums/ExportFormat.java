@@ -0,0 +1,33 @@
+package com.task.testtask.enums;
+
+/**
+ * It's a file format of exported puzzles.
+ */
+public enum ExportFormat {
+  /**
+   * Compressed PNG, the compression level can be chosen.
+   */
+  PNG("png"),
+  /**
+   * The Quite OK Image format, it's lossless and several times faster to write and read than PNG.
+   */
+  QOI("qoi");
+
+  private final String extension;
+
+  ExportFormat(String extension) {
+    this.extension = extension;
+  }
+
+  public String getExtension() {
+    return extension;
+  }
+
+  /**
+   * @param number number of the puzzle starting from 1
+   * @return name of the file of the puzzle, for example {@code image_1.png}
+   */
+  public String fileName(int number) {
+    return String.format("image_%d.%s", number, extension);
+  }
+}
@@ -0,0 +1,15 @@
+package com.task.testtask.enums;
+
+/**
+ * It's a way the blocks of the image construction pane are shown.
+ */
+public enum RenderMode {
+  /**
+   * Every block is a node of the scene, it's the default mode.
+   */
+  NODES,
+  /**
+   * All blocks are painted on a single canvas, only changed blocks are painted again. It's meant for big boards.
+   */
+  CANVAS
+}
@@ -0,0 +1,15 @@
+package com.task.testtask.enums;
+
+/**
+ * It's a metric used to compare two adjacent sides of puzzles.
+ */
+public enum ScoreMetric {
+  /**
+   * Compares mean colors of the border strips.
+   */
+  MEAN_COLOR,
+  /**
+   * Compares the touching lines pixel by pixel and adds a gradient prediction term.
+   */
+  PIXEL_DISSIMILARITY
+}
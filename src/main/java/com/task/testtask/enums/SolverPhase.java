@@ -0,0 +1,23 @@
+package com.task.testtask.enums;
+
+/**
+ * It's a phase of the automatic image collecting, each one is timed separately.
+ */
+public enum SolverPhase {
+  /**
+   * Reading the pixels of every puzzle and reducing its sides to edge descriptors.
+   */
+  PIXEL_EXTRACTION,
+  /**
+   * Comparing sides and keeping the best candidates of each of them.
+   */
+  SCORING,
+  /**
+   * Merging puzzles into clusters along the candidate links.
+   */
+  CLUSTER_MERGING,
+  /**
+   * Placing the biggest cluster on the grid and filling the rest of cells.
+   */
+  GRID_FILLING
+}
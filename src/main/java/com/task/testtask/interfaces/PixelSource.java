@@ -0,0 +1,15 @@
+package com.task.testtask.interfaces;
+
+/**
+ * It's a functional interface that gives pixels of puzzles to the solver, so it doesn't depend on where they are
+ * stored.
+ */
+@FunctionalInterface
+public interface PixelSource {
+  /**
+   * @param index index of the puzzle
+   * @param buffer a buffer that can be reused, it may be null
+   * @return ARGB pixels of the puzzle in the row-major order
+   */
+  int[] readPixels(int index, int[] buffer);
+}
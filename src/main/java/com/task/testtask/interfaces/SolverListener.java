@@ -0,0 +1,33 @@
+package com.task.testtask.interfaces;
+
+import com.task.testtask.enums.SolverPhase;
+import com.task.testtask.solver.SolverMetrics;
+
+/**
+ * It's an interface to observe the automatic image collecting. It's called on the thread that runs the solve.
+ */
+public interface SolverListener {
+  /**
+   * Listener that ignores everything, it's used by default.
+   */
+  SolverListener NONE = new SolverListener() {
+  };
+
+  default void onPhaseFinished(SolverPhase phase, long durationNanos) {
+
+  }
+
+  default void onSolveFinished(SolverMetrics metrics) {
+
+  }
+
+  /**
+   * It's polled inside the long phases, so a cancelled solve stops within a few rows of the work instead of after
+   * the whole phase.
+   *
+   * @return true to stop the solve with {@link java.util.concurrent.CancellationException}
+   */
+  default boolean isCancelled() {
+    return false;
+  }
+}
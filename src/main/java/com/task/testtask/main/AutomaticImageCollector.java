@@ -1,341 +1,179 @@
 package com.task.testtask.main;
 
-import com.task.testtask.Union;
 import com.task.testtask.components.Puzzle;
-import javafx.scene.image.Image;
-import javafx.scene.paint.Color;
-
-import java.util.*;
-
-import static com.task.testtask.utils.ColorSimilarityUtils.calculateColorSimilarity;
+import com.task.testtask.components.PuzzleState;
+import com.task.testtask.enums.SolverPhase;
+import com.task.testtask.interfaces.PixelSource;
+import com.task.testtask.solver.CandidateGraph;
+import com.task.testtask.solver.ClusterAssembler;
+import com.task.testtask.solver.CompatibilityMatrixBuilder;
+import com.task.testtask.solver.EdgeDescriptors;
+import com.task.testtask.solver.EdgeScorer;
+import com.task.testtask.solver.NeighbourIndex;
+import com.task.testtask.solver.Placement;
+import com.task.testtask.solver.SolverMetrics;
+import com.task.testtask.solver.SolverOptions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
 
 public class AutomaticImageCollector {
-  private static final int BORDER_THICKNESS = 5;
+  public static final int BORDER_THICKNESS = 5;
   private static final int ACCURACY_FACTOR = 97;
-  private static final int NOT_EXISTING_VALUE = -1;
-
-  private final List<List<Union>> rightOrder;
-  private final List<Puzzle> puzzles;
+  private static final int CANDIDATES_COUNT = 4;
+  private static final int RIGHT_ANGLE = 90;
+  private static final int RIGHT_ANGLES_COUNT = 4;
+
+  private final int piecesCount;
+  private final EdgeDescriptors edgeDescriptors;
+  private final SolverOptions options;
+  private final SolverMetrics metrics;
   private final int puzzleColumnsCount;
   private final int puzzleRowsCount;
-  private final int height;
-  private final int width;
 
   public AutomaticImageCollector(List<Puzzle> puzzles) {
-    this.puzzles = puzzles;
-    Image firstImage = puzzles.get(0).getImage();
-    width = (int) firstImage.getWidth();
-    height = (int) firstImage.getHeight();
-    puzzleColumnsCount = (int) Math.ceil(Math.sqrt(puzzles.size()));
-    puzzleRowsCount = puzzleColumnsCount;
-    rightOrder = Arrays.asList(
-            new ArrayList<>(),
-            new ArrayList<>(),
-            new ArrayList<>(),
-            new ArrayList<>()
-    );
+    this(puzzles, SolverOptions.defaults());
   }
 
   /**
-   * Logic of this method is following:
-   * <p>1. Find similarities for each side of the image and do this for each image</p>
-   * <p>2. Find top or bottom unions if possible</p>
-   * <p>3. Using the found unions find all other unions</p>
-   *
-   * @return list that contains right order of puzzle locating
+   * @param puzzles puzzles that should be collected
+   * @param options options of the collecting
    */
-  public List<Integer> automaticallyCollectImage() {
-    List<Union> unions = new ArrayList<>();
-    List<Double> similarityPercentages;
-    Image currentImage;
-    double maxValue;
-
-    for (int i = 0; i < puzzles.size(); i++) {
-      currentImage = puzzles.get(i).getImage();
-
-      System.out.println("Image_" + i);
-
-      similarityPercentages = checkTopSideSimilarities(currentImage);
-      maxValue = Collections.max(similarityPercentages);
-      int topIndex = maxValue > ACCURACY_FACTOR ? similarityPercentages.indexOf(maxValue) : NOT_EXISTING_VALUE;
-      System.out.println(String.format("Top index: %s, Value: %s", topIndex, maxValue));
-
-      similarityPercentages = checkBottomSideSimilarities(currentImage);
-      maxValue = Collections.max(similarityPercentages);
-      int bottomIndex = maxValue > ACCURACY_FACTOR ? similarityPercentages.indexOf(maxValue) : NOT_EXISTING_VALUE;
-      System.out.println(String.format("Bottom index: %s, Value: %s", bottomIndex, maxValue));
-
-      similarityPercentages = checkRightSideSimilarities(currentImage);
-      maxValue = Collections.max(similarityPercentages);
-      int rightIndex = maxValue > ACCURACY_FACTOR ? similarityPercentages.indexOf(maxValue) : NOT_EXISTING_VALUE;
-      System.out.println(String.format("right index: %s, Value: %s", rightIndex, maxValue));
-
-      similarityPercentages = checkLeftSideSimilarities(currentImage);
-      maxValue = Collections.max(similarityPercentages);
-      int leftIndex = maxValue > ACCURACY_FACTOR ? similarityPercentages.indexOf(maxValue) : NOT_EXISTING_VALUE;
-      System.out.println(String.format("left index: %s, Value: %s\n", leftIndex, maxValue));
-
-      Union union = Union.builder()
-              .currentUnionIndex(i)
-              .topUnionIndex(topIndex)
-              .bottomUnionIndex(bottomIndex)
-              .leftUnionIndex(leftIndex)
-              .rightUnionIndex(rightIndex)
-              .build();
-
-      unions.add(union);
-    }
-
-    findTopUnions(unions);
-    findBottomUnions(unions);
-    if (!rightOrder.get(0).isEmpty()) {
-      for (int i = 0; i <= puzzleColumnsCount - 2; i++) {
-        findMiddleUnions(unions, i + 1,  i);
-      }
-    }
-    else if (!rightOrder.get(puzzleRowsCount-1).isEmpty()) {
-      for (int i = puzzleColumnsCount - 1; i > 0; i--) {
-        findMiddleUnions(unions, i - 1,  i);
-      }
-    }
-
-    return convertRightOrderToIntegerList();
+  public AutomaticImageCollector(List<Puzzle> puzzles, SolverOptions options) {
+    this(puzzles.size(), () -> EdgeDescriptors.fromPuzzles(puzzles, BORDER_THICKNESS), options);
   }
 
-  private List<Integer> convertRightOrderToIntegerList() {
-    var newRightOrder = new ArrayList<Integer>();
-    for (var list : rightOrder) {
-      for (var value : list) {
-        newRightOrder.add(value.getCurrentUnionIndex());
-      }
-    }
-    return newRightOrder;
+  /**
+   * Collects pieces of the state into its grid, only tiles of the state are read, so it's safe to call it while the
+   * state is changed by the game.
+   *
+   * @param state state of the game
+   * @param options options of the collecting, the grid of the state is used if they don't set any
+   */
+  public AutomaticImageCollector(PuzzleState state, SolverOptions options) {
+    this(state.getPiecesCount(), state.getTiles().get(0).width(), state.getTiles().get(0).height(),
+            state.getPixelSource(), options.getRowsCount() > 0 && options.getColumnsCount() > 0 ? options :
+                    options.toBuilder().rowsCount(state.getRowsCount()).columnsCount(state.getColumnsCount()).build());
   }
 
-
-  private void findTopUnions(List<Union> unions) {
-    var topUnions = unions.stream().filter(x -> x.getTopUnionIndex() == NOT_EXISTING_VALUE).toList();
-
-    for (var union : topUnions) {
-      Union previousUnion;
-      rightOrder.get(0).add(union);
-      var currentUnionToCheck = union;
-
-      for (int i = 0; i < puzzleColumnsCount - 1; i++) {
-        previousUnion = currentUnionToCheck;
-        int rightUnionIndex = currentUnionToCheck.getRightUnionIndex();
-
-        if (rightUnionIndex == NOT_EXISTING_VALUE) {
-          break;
-        }
-
-        currentUnionToCheck = unions.get(rightUnionIndex);
-        if (currentUnionToCheck.getTopUnionIndex() != NOT_EXISTING_VALUE || previousUnion == currentUnionToCheck) {
-          rightOrder.get(0).clear();
-          break;
-        }
-        rightOrder.get(0).add(currentUnionToCheck);
-      }
-
-      if (rightOrder.get(0).size() == puzzleColumnsCount) {
-        break;
-      }
-    }
+  /**
+   * This constructor doesn't need JavaFX at all, so it's used to collect images without any display.
+   *
+   * @param piecesCount count of puzzles
+   * @param width width of each puzzle
+   * @param height height of each puzzle
+   * @param pixelSource source of the pixels of puzzles
+   * @param options options of the collecting
+   */
+  public AutomaticImageCollector(int piecesCount, int width, int height, PixelSource pixelSource,
+                                 SolverOptions options) {
+    this(piecesCount, () -> new EdgeDescriptors(piecesCount, width, height, BORDER_THICKNESS, pixelSource), options);
   }
 
-  private void findBottomUnions(List<Union> unions) {
-    var bottomUnions = unions.stream().filter(x -> x.getBottomUnionIndex() == -1).toList();
-    var lastRow = puzzleRowsCount - 1;
-
-    for (var union : bottomUnions) {
-      rightOrder.get(lastRow).add(union);
-      var currentUnionToCheck = union;
-
-      for (int i = 0; i < puzzleColumnsCount-1; i++) {
-        int rightUnionIndex = currentUnionToCheck.getRightUnionIndex();
-
-        if (rightUnionIndex == NOT_EXISTING_VALUE) {
-          break;
-        }
-
-        currentUnionToCheck = unions.get(rightUnionIndex);
-        if (currentUnionToCheck.getBottomUnionIndex() != NOT_EXISTING_VALUE) {
-          rightOrder.get(lastRow).clear();
-          break;
-        }
-        rightOrder.get(lastRow).add(currentUnionToCheck);
-      }
-
-      if (rightOrder.get(lastRow).size() == puzzleColumnsCount) {
-        break;
-      }
-    }
+  /**
+   * This constructor uses descriptors that were extracted before, for example stored in a puzzle set file.
+   *
+   * @param edgeDescriptors descriptors extracted with {@link #BORDER_THICKNESS}
+   * @param options options of the collecting
+   */
+  public AutomaticImageCollector(EdgeDescriptors edgeDescriptors, SolverOptions options) {
+    this(checkBorderThickness(edgeDescriptors).getPiecesCount(), () -> edgeDescriptors, options);
   }
 
-  private List<Union> findUnionsThatOnTheSameRow(Set<Union> uniqueElements, List<Union> unions) {
-    final var middleRowUnions = new ArrayList<Union>();
-
-    for (var uniqueUnion : uniqueElements) {
-      var leftUnionIdx =  uniqueUnion.getLeftUnionIndex();
-      var rightUnionIdx = uniqueUnion.getRightUnionIndex();
-
-      var leftUnion = leftUnionIdx != NOT_EXISTING_VALUE ?
-              unions.get(leftUnionIdx) :
-              new Union(NOT_EXISTING_VALUE);
-      var rightUnion = rightUnionIdx != NOT_EXISTING_VALUE ?
-              unions.get(rightUnionIdx) :
-              new Union(NOT_EXISTING_VALUE);
-      if (uniqueElements.contains(leftUnion) || uniqueElements.contains(rightUnion)) {
-        middleRowUnions.add(uniqueUnion);
-      }
+  private AutomaticImageCollector(int piecesCount, Supplier<EdgeDescriptors> edgeDescriptors,
+                                  SolverOptions options) {
+    this.piecesCount = piecesCount;
+    this.options = options;
+    this.metrics = new SolverMetrics(piecesCount, options.getListener());
+    this.edgeDescriptors = metrics.measure(SolverPhase.PIXEL_EXTRACTION, edgeDescriptors);
+    if (options.getRowsCount() > 0 && options.getColumnsCount() > 0) {
+      puzzleRowsCount = options.getRowsCount();
+      puzzleColumnsCount = options.getColumnsCount();
     }
-    return middleRowUnions;
-  }
-
-  private void findRightOrderForMiddleUnions(List<Union> unions,
-                                             List<Union> middleRowUnions,
-                                             int rowIndex, int knownRow) {
-    final var isKnownTopPos = rowIndex > knownRow;
-    for (var union : middleRowUnions) {
-      Union previousUnion;
-      var currentUnionToCheck = union;
-      var similaritiesCount = 1;
-      rightOrder.get(rowIndex).add(union);
-
-      for (int i = 0; i < puzzleColumnsCount - 1; i++) {
-        previousUnion = currentUnionToCheck;
-        int rightUnionIndex = currentUnionToCheck.getRightUnionIndex();
-
-        if (rightUnionIndex == NOT_EXISTING_VALUE) {
-          if (isKnownTopPos) {
-            currentUnionToCheck = unions.get(rightOrder.get(knownRow).get(i+1).getBottomUnionIndex());
-          }
-          else {
-            currentUnionToCheck = unions.get(rightOrder.get(knownRow).get(i+1).getTopUnionIndex());
-          }
-        }
-        else {
-          currentUnionToCheck = unions.get(rightUnionIndex);
-        }
-
-        rightOrder.get(rowIndex).add(currentUnionToCheck);
-
-        if (middleRowUnions.contains(currentUnionToCheck) && previousUnion != currentUnionToCheck) {
-          similaritiesCount++;
-        }
-      }
-      if (similaritiesCount >= middleRowUnions.size()) {
-        break;
-      }
-      rightOrder.get(rowIndex).clear();
+    else {
+      puzzleColumnsCount = (int) Math.ceil(Math.sqrt(piecesCount));
+      puzzleRowsCount = puzzleColumnsCount;
+    }
+    if ((long) puzzleRowsCount * puzzleColumnsCount < piecesCount) {
+      throw new IllegalArgumentException(String.format("%d puzzles don't fit into %dx%d grid",
+              piecesCount, puzzleRowsCount, puzzleColumnsCount));
     }
   }
 
-  private void findMiddleUnions(List<Union> unions, int rowIndex, int knownRow) {
-    Set<Union> uniqueElements = new HashSet<>();
-    var lastRow = puzzleRowsCount - 1;
-    rightOrder.get(rowIndex).clear();
-
-    if (knownRow == 0 || rowIndex > knownRow) {
-      for (int i = 0; i < puzzleRowsCount; i++) {
-        uniqueElements.add(unions.get(rightOrder.get(knownRow).get(i).getBottomUnionIndex()));
-      }
+  /**
+   * Checks the descriptors before anything is measured or reported to the listener.
+   */
+  private static EdgeDescriptors checkBorderThickness(EdgeDescriptors edgeDescriptors) {
+    if (edgeDescriptors.getBorderThickness() != BORDER_THICKNESS) {
+      throw new IllegalArgumentException("Descriptors must be extracted with the border thickness " +
+              BORDER_THICKNESS + ": " + edgeDescriptors.getBorderThickness());
     }
+    return edgeDescriptors;
+  }
 
-    else if (knownRow == lastRow || rowIndex < knownRow) {
-      for (int i = 0; i < puzzleRowsCount; i++) {
-        uniqueElements.add(unions.get(rightOrder.get(knownRow).get(i).getTopUnionIndex()));
-      }
+  /**
+   * Collects the image without taking the rotation into account.
+   *
+   * @return list that contains right order of puzzle locating, -1 marks an empty place
+   */
+  public List<Integer> automaticallyCollectImage() {
+    final var rightOrder = new ArrayList<Integer>();
+    for (var placement : collectPlacements()) {
+      rightOrder.add(placement.index());
     }
-
-    var middleRowUnions = findUnionsThatOnTheSameRow(uniqueElements, unions);
-    findRightOrderForMiddleUnions(unions, middleRowUnions, rowIndex, knownRow);
+    return rightOrder;
   }
 
   /**
-   * This method defines logic about how to check two images on similarity.
+   * Logic of this method is following:
+   * <p>1. Find similarities for each side of the image and do this for each image, all of them are computed at once
+   * in parallel. When puzzles can be rotated, every pair of sides is compared</p>
+   * <p>2. Keep only the best candidates for each side of each puzzle orientation. Big sets skip the first step and
+   * look the candidates up in the index of sides</p>
+   * <p>3. Merge puzzles into clusters starting from the most reliable links and fill the rest of the grid</p>
    *
-   * @param currentImage it's an image that currently checked to find its adjacent sides
-   * @param currentPuzzleBorders it's an array that contains values of borders defining how many pixels should be taken.
-   *                             And it defines borders for current puzzle.
-   *                             <p>This array should be initialized like this:</p>
-   *                             <p>int[] {xStartBorder, xEndBorder, yStartBorder, yEndBorder}</p>
-   * @param otherPuzzleBorders it's an array that contains values of border of all other puzzles except current one
-   * @return list that contains all similarity percentages of all puzzles to the current one on a particular side
+   * @return list that contains a puzzle and its rotation for each place of the grid in the row-major order
    */
-  private List<Double> toCheck(Image currentImage, int[] currentPuzzleBorders, int[] otherPuzzleBorders) {
-    final var similarityPercentages = new ArrayList<Double>();
-
-    double redSum = 0;
-    double greenSum = 0;
-    double blueSum = 0;
-
-    double redMeanCur;
-    double greenMeanCur;
-    double blueMeanCur;
-
-    double redMeanToCheck;
-    double greenMeanToCheck;
-    double blueMeanToCheck;
-
-
-    for (int y = currentPuzzleBorders[2]; y < currentPuzzleBorders[3]; y++) {
-      for (int x = currentPuzzleBorders[0]; x < currentPuzzleBorders[1]; x++) {
-        final var curColor = currentImage.getPixelReader().getColor(x, y);
-        redSum += curColor.getRed();
-        greenSum += curColor.getGreen();
-        blueSum += curColor.getBlue();
+  public List<Placement> collectPlacements() {
+    final var graph = metrics.measure(SolverPhase.SCORING, this::findCandidates);
+    final var assembler = new ClusterAssembler(graph, puzzleRowsCount, puzzleColumnsCount, ACCURACY_FACTOR,
+            metrics);
+    final var grid = assembler.assemble();
+
+    final var placements = new ArrayList<Placement>(grid.length);
+    for (var state : grid) {
+      if (state == CandidateGraph.NO_CANDIDATE) {
+        placements.add(new Placement(CandidateGraph.NO_CANDIDATE, 0));
       }
-    }
-    redMeanCur = redSum / (height * width);
-    greenMeanCur = greenSum / (height * width);
-    blueMeanCur = blueSum / (height * width);
-
-    for (var puzzle : puzzles) {
-      redSum = 0;
-      greenSum = 0;
-      blueSum = 0;
-
-      for (int y = otherPuzzleBorders[2]; y < otherPuzzleBorders[3]; y++) {
-        for (int x = otherPuzzleBorders[0]; x < otherPuzzleBorders[1]; x++) {
-          final var pixelColor = puzzle.getImage().getPixelReader().getColor(x, y);
-          redSum += pixelColor.getRed();
-          greenSum += pixelColor.getBlue();
-          blueSum += pixelColor.getGreen();
-        }
+      else {
+        placements.add(new Placement(graph.pieceOf(state), graph.quarterTurnsOf(state) * RIGHT_ANGLE));
       }
-
-      redMeanToCheck = redSum / (height * width);
-      greenMeanToCheck = greenSum / (height * width);
-      blueMeanToCheck = blueSum / (height * width);
-
-      final var similarityPercentage = calculateColorSimilarity(
-              new Color(redMeanCur, blueMeanCur, greenMeanCur, 1),
-              new Color(redMeanToCheck, greenMeanToCheck, blueMeanToCheck, 1));
-
-      similarityPercentages.add(similarityPercentage);
     }
-    return similarityPercentages;
+    metrics.finish();
+    return placements;
   }
 
-  private List<Double> checkRightSideSimilarities(Image currentImage) {
-    int[] currentPuzzleBorders = {width - BORDER_THICKNESS, width, 0, height};
-    int[] otherPuzzleBorders = {0, BORDER_THICKNESS, 0, height};
-    return toCheck(currentImage, currentPuzzleBorders, otherPuzzleBorders);
-  }
-  private List<Double> checkLeftSideSimilarities(Image currentImage) {
-    int[] currentPuzzleBorders = {0, BORDER_THICKNESS, 0, height};
-    int[] otherPuzzleBorders = {width - BORDER_THICKNESS, width, 0, height};
-    return toCheck(currentImage, currentPuzzleBorders, otherPuzzleBorders);
-  }
-  private List<Double> checkTopSideSimilarities(Image currentImage) {
-    int[] currentPuzzleBorders = {0, width, 0, BORDER_THICKNESS};
-    int[] otherPuzzleBorders = {0, width, height - BORDER_THICKNESS, height};
-    return toCheck(currentImage, currentPuzzleBorders, otherPuzzleBorders);
+  /**
+   * @return timers and counters of this collector, the same data is given to the listener from the options
+   */
+  public SolverMetrics getMetrics() {
+    return metrics;
   }
-  private List<Double> checkBottomSideSimilarities(Image currentImage) {
-    int[] currentPuzzleBorders = {0, width, height - BORDER_THICKNESS, height};
-    int[] otherPuzzleBorders = {0, width, 0, BORDER_THICKNESS};
-    return toCheck(currentImage, currentPuzzleBorders, otherPuzzleBorders);
+
+  private CandidateGraph findCandidates() {
+    final var orientationsCount = options.isRotationAware() ? RIGHT_ANGLES_COUNT : 1;
+    if ((long) piecesCount * orientationsCount <= options.getDenseMatrixLimit()) {
+      final var builder = new CompatibilityMatrixBuilder(options);
+      final var matrix = builder.build(edgeDescriptors, CANDIDATES_COUNT);
+      metrics.addComparisons(builder.getComparisonsCount());
+      return matrix.toCandidateGraph(CANDIDATES_COUNT);
+    }
+    final var scorer = new EdgeScorer(edgeDescriptors, options.getMetric());
+    final var index = new NeighbourIndex(scorer, options.isRotationAware());
+    final var graph = index.buildCandidateGraph(CANDIDATES_COUNT, options.getParallelism(),
+            options.getListener()::isCancelled);
+    metrics.addComparisons(index.getComparisonsCount());
+    return graph;
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,28 @@
+package com.task.testtask.main;
+
+import com.task.testtask.saving.ImageCache;
+import com.task.testtask.saving.PuzzleSet;
+import javafx.concurrent.Task;
+
+/**
+ * It's a background job that loads the source image cut into puzzles through the cache, so the window shows up
+ * before the image is downloaded and decoded.
+ */
+public class ImageLoadTask extends Task<PuzzleSet> {
+  private final ImageCache imageCache;
+  private final String url;
+  private final int rowCount;
+  private final int colCount;
+
+  public ImageLoadTask(ImageCache imageCache, String url, int rowCount, int colCount) {
+    this.imageCache = imageCache;
+    this.url = url;
+    this.rowCount = rowCount;
+    this.colCount = colCount;
+  }
+
+  @Override
+  protected PuzzleSet call() throws Exception {
+    return imageCache.load(url, rowCount, colCount);
+  }
+}
@@ -1,28 +1,35 @@
 package com.task.testtask.main;
 
 import com.task.testtask.components.Puzzle;
+import com.task.testtask.components.PuzzleState;
+import com.task.testtask.components.Tile;
+import com.task.testtask.components.TilePyramid;
 import com.task.testtask.components.panes.ImageConstructionPane;
 import com.task.testtask.components.panes.PuzzlePane;
+import com.task.testtask.enums.RenderMode;
+import com.task.testtask.saving.ImageCache;
+import com.task.testtask.saving.PuzzleSet;
+import com.task.testtask.saving.TileExporter;
+import com.task.testtask.solver.Placement;
+import javafx.application.Platform;
+import javafx.beans.binding.Bindings;
 import javafx.event.Event;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
-import javafx.scene.image.Image;
-import javafx.scene.image.PixelReader;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.image.PixelFormat;
 import javafx.scene.image.WritableImage;
 import javafx.scene.layout.Pane;
-import javafx.scene.transform.Rotate;
 
 import java.io.File;
 import java.net.URL;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.ResourceBundle;
 
-import static com.task.testtask.saving.Data.readImageFromFile;
-import static com.task.testtask.saving.Data.saveImageToFile;
-
 public class MainController implements Initializable {
   @FXML
   private Pane pane;
@@ -34,67 +41,121 @@ public class MainController implements Initializable {
   private Pane shadowPane;
   @FXML
   private Label congratulationLabel;
+  @FXML
+  private ProgressBar solveProgressBar;
+  @FXML
+  private Label correctCountLabel;
+  @FXML
+  private Label statusLabel;
 
   private static final double BUTTON_OPACITY_WHEN_PRESSED = 0.75;
-  private static final int ROW_COUNT = 4;
-  private static final int COL_COUNT = 4;
+  private static final int ROW_COUNT = Integer.getInteger("testtask.rows", 4);
+  private static final int COL_COUNT = Integer.getInteger("testtask.columns", 4);
   private static final int ROTATION_ANGLE = 90;
-  private static final String DIRECTORY_PATH = "src/main/resources/images";
   private static final String PATH = "https://cdnb.artstation.com/p/assets/images/images/048/380/283/large/" +
           "ivan-laliashvili-sf-underwater-final.jpg?1649882601";
-
-  private Image image;
-  private List<Puzzle> puzzles;
-  private List<Puzzle> puzzlesCopy;
+  private static final String IMAGE_URL_PROPERTY = "testtask.image.url";
+  private static final String IMAGE_DIRECTORY_PROPERTY = "testtask.image.directory";
+  private static final String CACHE_DIRECTORY_PROPERTY = "testtask.cache.directory";
+  private static final String RENDER_MODE_PROPERTY = "testtask.render";
+  private static final String EXPORT_DIRECTORY_PROPERTY = "testtask.export.directory";
+
+  private List<Tile> tiles = List.of();
+  private PuzzleState state;
   private PuzzlePane puzzlePane;
   private ImageConstructionPane constructionPane;
+  private SolveTask solveTask;
 
   @Override
   public void initialize(URL url, ResourceBundle resourceBundle) {
-    image = new Image(PATH);
     puzzlePane = new PuzzlePane(pane);
-    constructionPane = new ImageConstructionPane(imageConstructionPane);
+    constructionPane = new ImageConstructionPane(imageConstructionPane,
+            RenderMode.valueOf(System.getProperty(RENDER_MODE_PROPERTY, RenderMode.NODES.name())));
     defaultSettings();
+    loadImage();
   }
 
-  private void savePuzzlesToFile() {
-    for (int i = 0; i < puzzles.size(); i++) {
-      final var curImage = constructionPane.getRightPuzzlesOrder().get(i).getImage();
-      final var fileName = String.format("image_%d.png", i+1);
-      final var filePath = DIRECTORY_PATH + File.separator + fileName;
-      saveImageToFile(curImage, filePath);
-    }
+  /**
+   * Loads the image through the cache in the background. Until it's loaded the empty grid and the running progress
+   * bar are shown instead of the puzzles.
+   * <p>The image URL, the directory with local copies of images and the cache directory can be changed with the
+   * {@code testtask.image.url}, {@code testtask.image.directory} and {@code testtask.cache.directory} system
+   * properties, so the game also works with {@code file:} URLs and without network. The grid is set with the
+   * {@code testtask.rows} and {@code testtask.columns} properties, and {@code testtask.render=CANVAS} paints the
+   * image on a single canvas. With {@code testtask.export.directory} the loaded puzzles are also saved as files.</p>
+   */
+  private void loadImage() {
+    final var standInDirectory = System.getProperty(IMAGE_DIRECTORY_PROPERTY);
+    final var imageCache = new ImageCache(
+            Path.of(System.getProperty(CACHE_DIRECTORY_PROPERTY,
+                    System.getProperty("user.home") + File.separator + ".cache" + File.separator + "testtask")),
+            standInDirectory == null ? null : Path.of(standInDirectory));
+    final var task = new ImageLoadTask(imageCache, System.getProperty(IMAGE_URL_PROPERTY, PATH),
+            ROW_COUNT, COL_COUNT);
+    task.setOnSucceeded(event -> {
+      solveProgressBar.setVisible(false);
+      tiles = readTilesFromPuzzleSet(task.getValue());
+      restart();
+      savePuzzlesToFile();
+    });
+    task.setOnFailed(event -> {
+      solveProgressBar.setVisible(false);
+      showError("Error loading image: " + task.getException().getMessage());
+    });
+    hideError();
+    solveProgressBar.setProgress(ProgressBar.INDETERMINATE_PROGRESS);
+    solveProgressBar.setVisible(true);
+
+    final var thread = new Thread(task, "image-loader");
+    thread.setDaemon(true);
+    thread.start();
   }
 
-  private List<Puzzle> readPuzzlesFromFile() {
-    List<Puzzle> puzzlesList = new ArrayList<>();
-    for (int i = 0; i < ROW_COUNT*COL_COUNT; i++) {
-      String fileName = String.format("image_%d.png", i+1);
-      String filePath = DIRECTORY_PATH + File.separator + fileName;
-      Image curImage = readImageFromFile(filePath);
-      puzzlesList.add(new Puzzle(curImage));
+  /**
+   * Exports pieces in the right order in parallel straight from the state into the directory of the
+   * {@code testtask.export.directory} property, nothing is exported without it. Files that failed are shown as an
+   * error.
+   */
+  private void savePuzzlesToFile() {
+    final var exportDirectory = System.getProperty(EXPORT_DIRECTORY_PROPERTY);
+    if (exportDirectory == null) {
+      return;
     }
-    return puzzlesList;
+    TileExporter.builder().build().export(state.getTiles(), Path.of(exportDirectory))
+            .whenComplete((result, exception) -> Platform.runLater(() -> {
+              if (exception != null) {
+                showError("Error exporting puzzles: " + exception.getMessage());
+              }
+              else if (!result.isSuccessful()) {
+                showError("Error exporting puzzles: " + result.failures().size() + " files weren't written");
+              }
+            }));
   }
 
-  private List<Puzzle> cutPuzzlesFromImage(Image image, int rowCount, int colCount) {
-    List<Puzzle> tiles = new ArrayList<>();
-    PixelReader pixelReader = image.getPixelReader();
-
-    final var width = (int) image.getWidth();
-    final var height = (int) image.getHeight();
-
-    final var tileSizeX = width / colCount;
-    final var tileSizeY = height / rowCount;
+  /**
+   * Copies tiles from the mapped file straight into a single image, the tiles are views into it and share its
+   * {@link TilePyramid}.
+   */
+  private List<Tile> readTilesFromPuzzleSet(PuzzleSet puzzleSet) {
+    final var tileWidth = puzzleSet.getTileWidth();
+    final var tileHeight = puzzleSet.getTileHeight();
+    final var columnsCount = puzzleSet.getColumnsCount();
+    final var rowsCount = puzzleSet.getRowsCount();
+    final var image = new WritableImage(columnsCount * tileWidth, rowsCount * tileHeight);
+    final var pixelWriter = image.getPixelWriter();
+
+    for (int i = 0; i < puzzleSet.size(); i++) {
+      pixelWriter.setPixels(i % columnsCount * tileWidth, i / columnsCount * tileHeight, tileWidth, tileHeight,
+              PixelFormat.getIntArgbInstance(), puzzleSet.getTilePixels(i), tileWidth);
+    }
+    final var pyramid = TilePyramid.build(image, columnsCount, rowsCount, tileWidth, tileHeight);
 
-    for (int y = 0; y < rowCount; y++) {
-      for (int x = 0; x < colCount; x++) {
-        int startX = x * tileSizeX;
-        int startY = y * tileSizeY;
-        tiles.add(new Puzzle(new WritableImage(pixelReader, startX, startY, tileSizeX, tileSizeY)));
-      }
+    final var tilesList = new ArrayList<Tile>();
+    for (int i = 0; i < puzzleSet.size(); i++) {
+      tilesList.add(new Tile(image, i % columnsCount * tileWidth, i / columnsCount * tileHeight, tileWidth,
+              tileHeight, pyramid));
     }
-    return tiles;
+    return tilesList;
   }
 
   private void defaultSettings() {
@@ -102,21 +163,13 @@ public class MainController implements Initializable {
     congratulationLabel.setVisible(false);
     shadowPane.setVisible(false);
 
-//    puzzles = readPuzzlesFromFile();
-    puzzles = cutPuzzlesFromImage(image, ROW_COUNT, COL_COUNT);
+    state = new PuzzleState(tiles, ROW_COUNT, COL_COUNT);
 
     constructionPane.divideOnBlocks(ROW_COUNT, COL_COUNT);
-    constructionPane.setRightPuzzlesOrder(puzzles);
-    puzzlePane.addPuzzles(puzzles, true);
-    puzzlesCopy = copyPuzzlesList(puzzles);
-  }
-
-  private List<Puzzle> copyPuzzlesList(List<Puzzle> puzzles) {
-    final var list = new ArrayList<Puzzle>();
-    for (var puzzle : puzzles) {
-      list.add(new Puzzle(puzzle));
-    }
-    return list;
+    constructionPane.setState(state);
+    puzzlePane.addPuzzles(state, true);
+    correctCountLabel.textProperty().bind(Bindings.format("%d of %d correct",
+            constructionPane.correctCountProperty(), state.getPiecesCount()));
   }
 
   @FXML
@@ -139,12 +192,9 @@ public class MainController implements Initializable {
       return;
     }
 
-    final var selectedPuzzleRotation = selectedPuzzle.getView().getTransforms();
-    final var centerX = selectedPuzzle.getCenterX();
-    final var centerY = selectedPuzzle.getCenterY();
-
-    selectedPuzzle.setRotation(selectedPuzzle.getRotation() - ROTATION_ANGLE);
-    selectedPuzzleRotation.add(new Rotate(-ROTATION_ANGLE, centerX, centerY));
+    state.rotate(selectedPuzzle.getLocation(), -ROTATION_ANGLE);
+    selectedPuzzle.show(state);
+    constructionPane.refreshBlock(selectedPuzzle);
   }
 
   @FXML
@@ -155,16 +205,16 @@ public class MainController implements Initializable {
       return;
     }
 
-    final var selectedPuzzleRotation = selectedPuzzle.getView().getTransforms();
-    final var centerX = selectedPuzzle.getCenterX();
-    final var centerY = selectedPuzzle.getCenterY();
-
-    selectedPuzzle.setRotation(selectedPuzzle.getRotation() + ROTATION_ANGLE);
-    selectedPuzzleRotation.add(new Rotate(ROTATION_ANGLE, centerX, centerY));
+    state.rotate(selectedPuzzle.getLocation(), ROTATION_ANGLE);
+    selectedPuzzle.show(state);
+    constructionPane.refreshBlock(selectedPuzzle);
   }
 
   @FXML
   protected void submit() {
+    if (state.getPiecesCount() == 0) {
+      return;
+    }
     final var isImageCorrect = constructionPane.checkConstructedImageCorrectness();
     congratulationPane.setVisible(isImageCorrect);
     congratulationLabel.setVisible(isImageCorrect);
@@ -173,24 +223,83 @@ public class MainController implements Initializable {
 
   @FXML
   protected void restart() {
+    cancelSolve();
+    Puzzle.clearSelection();
     puzzlePane.toDefault();
     constructionPane.toDefault();
     defaultSettings();
   }
 
+  /**
+   * Starts collecting the image in the background. A click while the solve is running is ignored.
+   */
   @FXML
   protected void solve() {
-    final var imageCollector = new AutomaticImageCollector(puzzlesCopy);
-    final var rightOrder = imageCollector.automaticallyCollectImage();
+    if (state.getPiecesCount() == 0 || solveTask != null && solveTask.isRunning()) {
+      return;
+    }
+    final var task = new SolveTask(state);
+    task.setOnSucceeded(event -> {
+      solveProgressBar.setVisible(false);
+      applyPlacements(task.getValue());
+    });
+    task.setOnFailed(event -> {
+      solveProgressBar.progressProperty().unbind();
+      solveProgressBar.setVisible(false);
+      showError("Error solving the puzzle: " + task.getException().getMessage());
+    });
+    hideError();
+    solveProgressBar.progressProperty().bind(task.progressProperty());
+    solveProgressBar.setVisible(true);
+    solveTask = task;
+
+    final var thread = new Thread(task, "puzzle-solver");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Cancels the running solve, its result is never applied. Nothing waits for the solver thread, it stops on its own
+   * within a few rows of the current phase.
+   */
+  private void cancelSolve() {
+    if (solveTask != null) {
+      solveTask.cancel();
+      solveTask = null;
+    }
+    solveProgressBar.progressProperty().unbind();
+    solveProgressBar.setVisible(false);
+  }
+
+  /**
+   * Shows the error under the progress bar instead of throwing it out of the handler, so the game goes on.
+   */
+  private void showError(String message) {
+    statusLabel.setText(message);
+    statusLabel.setVisible(true);
+  }
+
+  private void hideError() {
+    statusLabel.setText("");
+    statusLabel.setVisible(false);
+  }
+
+  /**
+   * Applies the whole result to the state at once and shows it, it's called on the JavaFX application thread.
+   */
+  private void applyPlacements(List<Placement> placements) {
     final var puzzlesToChange = constructionPane.getPuzzles();
 
-    for (int i = 0; i < rightOrder.size(); i++) {
-      var puzzle = puzzlesToChange.get(i);
-      puzzle.setActive(true);
-      puzzle.setImage(puzzlesCopy.get(rightOrder.get(i)).getImage());
-      puzzle.getView().setOpacity(1);
-      puzzlePane.getPane().getChildren().get(i).setVisible(false);
+    for (int i = 0; i < placements.size(); i++) {
+      final var placement = placements.get(i);
+      if (placement.index() < 0) {
+        continue;
+      }
+      state.place(placement.index(), i, placement.rotation());
+      puzzlesToChange.get(i).getView().setOpacity(1);
     }
+    constructionPane.refresh();
+    puzzlePane.refresh();
   }
 
   @FXML
@@ -0,0 +1,55 @@
+package com.task.testtask.main;
+
+import com.task.testtask.components.PuzzleState;
+import com.task.testtask.enums.SolverPhase;
+import com.task.testtask.interfaces.SolverListener;
+import com.task.testtask.solver.Placement;
+import com.task.testtask.solver.SolverOptions;
+import javafx.concurrent.Task;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/**
+ * It's a background job that collects the image automatically, so the window stays responsive during the solve.
+ * <p>Progress goes up after every solver phase. The solver polls the cancellation between phases and inside the
+ * matrix build and the index queries, a cancelled task never reports its result.</p>
+ */
+public class SolveTask extends Task<List<Placement>> {
+  private static final int PHASES_COUNT = SolverPhase.values().length;
+
+  private final PuzzleState state;
+
+  /**
+   * @param state state of the game, only its tiles and grid are read, so the game can go on during the solve
+   */
+  public SolveTask(PuzzleState state) {
+    this.state = state;
+  }
+
+  @Override
+  protected List<Placement> call() {
+    updateProgress(0, PHASES_COUNT);
+    final var listener = new SolverListener() {
+      @Override
+      public void onPhaseFinished(SolverPhase phase, long durationNanos) {
+        if (isCancelled()) {
+          throw new CancellationException("Solve was cancelled after " + phase);
+        }
+        updateProgress(phase.ordinal() + 1, PHASES_COUNT);
+      }
+
+      @Override
+      public boolean isCancelled() {
+        return SolveTask.this.isCancelled();
+      }
+    };
+    final var options = SolverOptions.builder()
+            .rowsCount(state.getRowsCount())
+            .columnsCount(state.getColumnsCount())
+            .listener(listener)
+            .build();
+
+    return new AutomaticImageCollector(state, options).collectPlacements();
+  }
+}
@@ -1,18 +1,27 @@
 package com.task.testtask.saving;
 
-import javafx.embed.swing.SwingFXUtils;
+import com.task.testtask.components.Tile;
 import javafx.scene.image.Image;
 
 import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
 
 public class Data implements Serializable {
   public static void saveImageToFile(Image image, String filePath) {
+    saveTileToFile(Tile.of(image), filePath);
+  }
+
+  /**
+   * Saves only the region of the tile, pixels are read straight from the source image.
+   */
+  public static void saveTileToFile(Tile tile, String filePath) {
     File file = new File(filePath);
     try {
-      java.awt.image.BufferedImage bufferedImage = SwingFXUtils.fromFXImage(image, null);
+      BufferedImage bufferedImage = toBufferedImage(tile);
       ImageIO.write(bufferedImage, "png", file);
     } catch (IOException e) {
       throw new RuntimeException("Error saving image: " + e.getMessage());
@@ -27,4 +36,14 @@ public class Data implements Serializable {
       throw new RuntimeException("Error saving image: " + e.getMessage());
     }
   }
+
+  /**
+   * Converts the tile by reading its pixels straight into the raster of an ARGB {@link BufferedImage}.
+   */
+  private static BufferedImage toBufferedImage(Tile tile) {
+    final var bufferedImage = new BufferedImage(tile.width(), tile.height(), BufferedImage.TYPE_INT_ARGB);
+    final var raster = ((DataBufferInt) bufferedImage.getRaster().getDataBuffer()).getData();
+    tile.readPixels(raster);
+    return bufferedImage;
+  }
 }
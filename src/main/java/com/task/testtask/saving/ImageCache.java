@@ -0,0 +1,217 @@
+package com.task.testtask.saving;
+
+import javax.imageio.ImageIO;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * It's an on-disk cache of source images and puzzle sets cut from them, entries are addressed by the SHA-256 hash of
+ * the source bytes.
+ * <p>The cache directory holds {@code <hash>.qoi} with the decoded source, {@code <hash>-<rows>x<columns>.pzs} with
+ * the tiles cut from it and {@code urls/<hash of the url>} with the hash of the last source read from that URL and its
+ * validator. A relaunch finds the puzzle set through the URL, so the source is neither decoded nor cut again. Another
+ * grid size of the same source only costs decoding of the QOI file.</p>
+ * <p>The URL entry is revalidated on every load. A local file, either a stand-in or a {@code file:} URL, is trusted
+ * while its size and modification time are the same. An HTTP source is asked with a conditional request built from
+ * its {@code ETag} or {@code Last-Modified} header and is only downloaded again when the server doesn't answer
+ * {@code 304 Not Modified}; a source without these headers is downloaded on every load, and only its decoding is
+ * skipped when its bytes didn't change.</p>
+ * <p>Every entry is written to a temporary file first and then moved into place, so a crash never leaves a broken
+ * entry behind.</p>
+ */
+public class ImageCache {
+  private static final String URLS_DIRECTORY = "urls";
+  private static final String SOURCE_EXTENSION = "qoi";
+  private static final String ETAG_PREFIX = "etag:";
+  private static final String LAST_MODIFIED_PREFIX = "modified:";
+  private static final String FILE_PREFIX = "file:";
+
+  private final Path directory;
+  private final Path standInDirectory;
+
+  /**
+   * @param directory directory of the cache, it's created when needed
+   * @param standInDirectory directory with local copies of the sources, a source is read from here when the directory
+   *                         contains a file with the same name as the last segment of the URL, it may be null
+   */
+  public ImageCache(Path directory, Path standInDirectory) {
+    this.directory = directory;
+    this.standInDirectory = standInDirectory;
+  }
+
+  /**
+   * Returns the image at the URL cut into a grid of tiles in the row-major order, the ground truth of the set is the
+   * identity order.
+   */
+  public PuzzleSet load(String url, int rowsCount, int columnsCount) throws IOException {
+    Files.createDirectories(directory.resolve(URLS_DIRECTORY));
+    final var urlFile = directory.resolve(URLS_DIRECTORY).resolve(hash(url.getBytes(StandardCharsets.UTF_8)));
+    final var urlEntry = Files.exists(urlFile) ? Files.readAllLines(urlFile, StandardCharsets.UTF_8) :
+            List.<String>of();
+
+    var source = urlEntry.size() < 2 ? fetch(url, "") : fetch(url, urlEntry.get(1));
+    if (source.bytes() == null) {
+      final var cached = loadCached(urlEntry.get(0), rowsCount, columnsCount);
+      if (cached != null) {
+        return cached;
+      }
+      source = fetch(url, "");
+    }
+
+    final var sourceHash = hash(source.bytes());
+    writeAtomically(urlFile, (sourceHash + "\n" + source.validator()).getBytes(StandardCharsets.UTF_8));
+
+    final var cached = loadCached(sourceHash, rowsCount, columnsCount);
+    if (cached != null) {
+      return cached;
+    }
+
+    final var image = ImageIO.read(new ByteArrayInputStream(source.bytes()));
+    if (image == null) {
+      throw new IOException("Unsupported image format: " + url);
+    }
+    final var width = image.getWidth();
+    final var height = image.getHeight();
+    final var pixels = image.getRGB(0, 0, width, height, null, 0, width);
+    writeAtomically(sourceFile(sourceHash), Qoi.encode(pixels, width, height));
+    return cut(sourceHash, pixels, width, height, rowsCount, columnsCount);
+  }
+
+  /**
+   * @return the cached puzzle set, or null if neither the set nor the decoded source is in the cache
+   */
+  private PuzzleSet loadCached(String sourceHash, int rowsCount, int columnsCount) throws IOException {
+    final var puzzleSetFile = puzzleSetFile(sourceHash, rowsCount, columnsCount);
+    if (Files.exists(puzzleSetFile)) {
+      return PuzzleSet.read(puzzleSetFile);
+    }
+    final var sourceFile = sourceFile(sourceHash);
+    if (Files.exists(sourceFile)) {
+      final var dimensions = new int[2];
+      final int[] pixels;
+      try (var input = Files.newInputStream(sourceFile)) {
+        pixels = Qoi.read(input, dimensions);
+      }
+      return cut(sourceHash, pixels, dimensions[0], dimensions[1], rowsCount, columnsCount);
+    }
+    return null;
+  }
+
+  private PuzzleSet cut(String sourceHash, int[] pixels, int width, int height, int rowsCount, int columnsCount)
+          throws IOException {
+    final var tileSet = TileSet.cut(pixels, width, height, rowsCount, columnsCount);
+    final var truthOrder = new int[tileSet.size()];
+    for (int i = 0; i < truthOrder.length; i++) {
+      truthOrder[i] = i;
+    }
+
+    final var puzzleSetFile = puzzleSetFile(sourceHash, rowsCount, columnsCount);
+    final var temporaryFile = Files.createTempFile(directory, sourceHash, ".tmp");
+    try {
+      PuzzleSet.write(temporaryFile, tileSet, rowsCount, columnsCount, null, truthOrder);
+      Files.move(temporaryFile, puzzleSetFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temporaryFile);
+    }
+    return PuzzleSet.read(puzzleSetFile);
+  }
+
+  /**
+   * It's a source read from a URL.
+   *
+   * @param bytes content of the source, or null if it didn't change since the given validator
+   * @param validator a string that changes together with the source, or an empty one if there's no such string
+   */
+  private record Source(byte[] bytes, String validator) {
+  }
+
+  /**
+   * @param validator validator of the cached source, the source isn't read if it's still the same
+   */
+  private Source fetch(String url, String validator) throws IOException {
+    if (standInDirectory != null) {
+      final var path = new URL(url).getPath();
+      final var standIn = standInDirectory.resolve(path.substring(path.lastIndexOf('/') + 1));
+      if (Files.exists(standIn)) {
+        return readFile(standIn, validator);
+      }
+    }
+    final var location = new URL(url);
+    if ("file".equals(location.getProtocol())) {
+      try {
+        return readFile(Path.of(location.toURI()), validator);
+      } catch (URISyntaxException e) {
+        throw new IOException("Error reading " + url + ": " + e.getMessage());
+      }
+    }
+
+    final var connection = location.openConnection();
+    if (connection instanceof HttpURLConnection httpConnection) {
+      if (validator.startsWith(ETAG_PREFIX)) {
+        httpConnection.setRequestProperty("If-None-Match", validator.substring(ETAG_PREFIX.length()));
+      }
+      else if (validator.startsWith(LAST_MODIFIED_PREFIX)) {
+        httpConnection.setRequestProperty("If-Modified-Since", validator.substring(LAST_MODIFIED_PREFIX.length()));
+      }
+      if (httpConnection.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+        httpConnection.disconnect();
+        return new Source(null, validator);
+      }
+    }
+    final var etag = connection.getHeaderField("ETag");
+    final var lastModified = connection.getHeaderField("Last-Modified");
+    try (InputStream input = connection.getInputStream()) {
+      final var bytes = input.readAllBytes();
+      if (etag != null) {
+        return new Source(bytes, ETAG_PREFIX + etag);
+      }
+      return new Source(bytes, lastModified == null ? "" : LAST_MODIFIED_PREFIX + lastModified);
+    }
+  }
+
+  private static Source readFile(Path file, String validator) throws IOException {
+    final var fileValidator = FILE_PREFIX + Files.size(file) + ":" + Files.getLastModifiedTime(file).toMillis();
+    if (fileValidator.equals(validator)) {
+      return new Source(null, validator);
+    }
+    return new Source(Files.readAllBytes(file), fileValidator);
+  }
+
+  private void writeAtomically(Path file, byte[] content) throws IOException {
+    final var temporaryFile = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+    try {
+      Files.write(temporaryFile, content);
+      Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temporaryFile);
+    }
+  }
+
+  private Path sourceFile(String sourceHash) {
+    return directory.resolve(sourceHash + "." + SOURCE_EXTENSION);
+  }
+
+  private Path puzzleSetFile(String sourceHash, int rowsCount, int columnsCount) {
+    return directory.resolve(sourceHash + "-" + rowsCount + "x" + columnsCount + "." + PuzzleSet.FILE_EXTENSION);
+  }
+
+  private static String hash(byte[] bytes) {
+    try {
+      return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException("Error hashing: " + e.getMessage());
+    }
+  }
+}
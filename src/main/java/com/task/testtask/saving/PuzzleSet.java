@@ -0,0 +1,203 @@
+package com.task.testtask.saving;
+
+import com.task.testtask.interfaces.PixelSource;
+import com.task.testtask.solver.EdgeDescriptors;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * It's a set of puzzles stored in a single memory-mapped file.
+ * <p>The file consists of a fixed header, raw ARGB pixels of all tiles one after another, optional edge descriptors
+ * and an optional ground-truth order. Everything is little-endian. Pixels are never decoded or copied on loading,
+ * they're read from the mapping when a tile is needed, so opening even a huge set costs only page faults.</p>
+ * <p>Header layout, each field is an int unless said otherwise: magic {@code PZS1}, version, rows count, columns
+ * count, tile width, tile height, tiles count, flags, pixels offset (long), descriptors offset (long), truth offset
+ * (long), reserved (long).</p>
+ */
+public class PuzzleSet {
+  public static final String FILE_EXTENSION = "pzs";
+
+  private static final int MAGIC = 0x31535a50;
+  private static final int VERSION = 1;
+  private static final int HEADER_SIZE = 64;
+  private static final int HAS_DESCRIPTORS = 1;
+  private static final int HAS_TRUTH = 2;
+  private static final int ALIGNMENT = Long.BYTES;
+
+  private final int rowsCount;
+  private final int columnsCount;
+  private final int tileWidth;
+  private final int tileHeight;
+  private final int tilesCount;
+  private final IntBuffer pixels;
+  private final EdgeDescriptors edgeDescriptors;
+  private final int[] truthOrder;
+
+  private PuzzleSet(int rowsCount, int columnsCount, int tileWidth, int tileHeight, int tilesCount,
+                    IntBuffer pixels, EdgeDescriptors edgeDescriptors, int[] truthOrder) {
+    this.rowsCount = rowsCount;
+    this.columnsCount = columnsCount;
+    this.tileWidth = tileWidth;
+    this.tileHeight = tileHeight;
+    this.tilesCount = tilesCount;
+    this.pixels = pixels;
+    this.edgeDescriptors = edgeDescriptors;
+    this.truthOrder = truthOrder;
+  }
+
+  /**
+   * Maps the file into memory, only the header and the descriptors are read right away.
+   */
+  public static PuzzleSet read(Path file) throws IOException {
+    final ByteBuffer buffer;
+    try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+    }
+    if (buffer.capacity() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+      throw new IOException("Not a puzzle set file: " + file);
+    }
+    final var version = buffer.getInt();
+    if (version != VERSION) {
+      throw new IOException("Unsupported puzzle set version: " + version);
+    }
+    final var rowsCount = buffer.getInt();
+    final var columnsCount = buffer.getInt();
+    final var tileWidth = buffer.getInt();
+    final var tileHeight = buffer.getInt();
+    final var tilesCount = buffer.getInt();
+    final var flags = buffer.getInt();
+    final var pixelsOffset = buffer.getLong();
+    final var descriptorsOffset = buffer.getLong();
+    final var truthOffset = buffer.getLong();
+
+    final var pixelsLength = tilesCount * tileWidth * tileHeight;
+    final var pixels = buffer.position((int) pixelsOffset).slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer()
+            .limit(pixelsLength);
+
+    EdgeDescriptors edgeDescriptors = null;
+    if ((flags & HAS_DESCRIPTORS) != 0) {
+      edgeDescriptors = EdgeDescriptors.readFrom(buffer.position((int) descriptorsOffset));
+    }
+
+    int[] truthOrder = null;
+    if ((flags & HAS_TRUTH) != 0) {
+      truthOrder = new int[tilesCount];
+      buffer.position((int) truthOffset).asIntBuffer().get(truthOrder);
+    }
+    return new PuzzleSet(rowsCount, columnsCount, tileWidth, tileHeight, tilesCount, pixels, edgeDescriptors,
+            truthOrder);
+  }
+
+  /**
+   * Writes the tiles into a single file.
+   *
+   * @param edgeDescriptors descriptors of the tiles, it may be null
+   * @param truthOrder index of the tile for each cell of the grid in the row-major order, it may be null
+   */
+  public static void write(Path file, TileSet tileSet, int rowsCount, int columnsCount,
+                           EdgeDescriptors edgeDescriptors, int[] truthOrder) throws IOException {
+    final var tilesCount = tileSet.size();
+    final var tileLength = tileSet.width() * tileSet.height();
+    final long pixelsOffset = HEADER_SIZE;
+    final var pixelsEnd = pixelsOffset + (long) tilesCount * tileLength * Integer.BYTES;
+    final var descriptorsOffset = edgeDescriptors == null ? 0 : align(pixelsEnd);
+    final var descriptorsEnd = edgeDescriptors == null ? pixelsEnd :
+            descriptorsOffset + edgeDescriptors.getSerializedSize();
+    final var truthOffset = truthOrder == null ? 0 : align(descriptorsEnd);
+    final var fileSize = truthOrder == null ? descriptorsEnd : truthOffset + (long) tilesCount * Integer.BYTES;
+    if (fileSize > Integer.MAX_VALUE) {
+      throw new IOException("Puzzle set is too big for a single mapping: " + fileSize + " bytes");
+    }
+
+    final var flags = (edgeDescriptors == null ? 0 : HAS_DESCRIPTORS) | (truthOrder == null ? 0 : HAS_TRUTH);
+    try (var channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      final var mapping = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+      final var buffer = mapping.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+      buffer.putInt(MAGIC).putInt(VERSION).putInt(rowsCount).putInt(columnsCount)
+              .putInt(tileSet.width()).putInt(tileSet.height()).putInt(tilesCount).putInt(flags)
+              .putLong(pixelsOffset).putLong(descriptorsOffset).putLong(truthOffset).putLong(0);
+
+      final var pixels = buffer.position((int) pixelsOffset).slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+      for (var tile : tileSet.tiles()) {
+        pixels.put(tile, 0, tileLength);
+      }
+      if (edgeDescriptors != null) {
+        edgeDescriptors.writeTo(buffer.position((int) descriptorsOffset));
+      }
+      if (truthOrder != null) {
+        buffer.position((int) truthOffset).asIntBuffer().put(truthOrder);
+      }
+      mapping.force();
+    }
+  }
+
+  public int getRowsCount() {
+    return rowsCount;
+  }
+
+  public int getColumnsCount() {
+    return columnsCount;
+  }
+
+  public int getTileWidth() {
+    return tileWidth;
+  }
+
+  public int getTileHeight() {
+    return tileHeight;
+  }
+
+  public int size() {
+    return tilesCount;
+  }
+
+  /**
+   * @return descriptors stored in the file, or null if the file has none
+   */
+  public EdgeDescriptors getEdgeDescriptors() {
+    return edgeDescriptors;
+  }
+
+  /**
+   * @return index of the tile for each cell of the grid in the row-major order, or null if the file has none
+   */
+  public int[] getTruthOrder() {
+    return truthOrder;
+  }
+
+  /**
+   * Copies pixels of one tile from the mapping.
+   *
+   * @param buffer a buffer to reuse, a new one is allocated if it's null or too small
+   * @return ARGB pixels of the tile in the row-major order
+   */
+  public int[] readPixels(int index, int[] buffer) {
+    final var tileLength = tileWidth * tileHeight;
+    final var tile = buffer == null || buffer.length < tileLength ? new int[tileLength] : buffer;
+    pixels.get(index * tileLength, tile, 0, tileLength);
+    return tile;
+  }
+
+  /**
+   * @return view of the pixels of one tile in the mapping, nothing is copied
+   */
+  public IntBuffer getTilePixels(int index) {
+    final var tileLength = tileWidth * tileHeight;
+    return pixels.duplicate().position(index * tileLength).limit((index + 1) * tileLength);
+  }
+
+  public PixelSource getPixelSource() {
+    return this::readPixels;
+  }
+
+  private static long align(long offset) {
+    return (offset + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+  }
+}
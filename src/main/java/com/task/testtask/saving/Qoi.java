@@ -0,0 +1,201 @@
+package com.task.testtask.saving;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * It's a codec of the Quite OK Image format (https://qoiformat.org), it works on ARGB pixels without any conversion.
+ * <p>Every pixel is written as a run of the previous pixel, a reference to one of 64 recently seen pixels, a small
+ * difference from the previous pixel or a full value. It costs a few branches per pixel, so it's much faster than
+ * PNG that has to deflate the data.</p>
+ */
+public class Qoi {
+  private static final int MAGIC = 0x716f6966;
+  private static final int HEADER_SIZE = 14;
+  private static final byte[] END_MARKER = {0, 0, 0, 0, 0, 0, 0, 1};
+  private static final int CHANNELS = 4;
+  private static final int SRGB = 0;
+
+  private static final int OP_INDEX = 0x00;
+  private static final int OP_DIFF = 0x40;
+  private static final int OP_LUMA = 0x80;
+  private static final int OP_RUN = 0xc0;
+  private static final int OP_RGB = 0xfe;
+  private static final int OP_RGBA = 0xff;
+  private static final int OP_MASK = 0xc0;
+  private static final int MAX_RUN = 62;
+  private static final int INDEX_SIZE = 64;
+  private static final int START_PIXEL = 0xff000000;
+
+  private Qoi() {
+
+  }
+
+  /**
+   * @param pixels ARGB pixels in the row-major order with the stride equal to the width
+   */
+  public static void write(int[] pixels, int width, int height, OutputStream output) throws IOException {
+    output.write(encode(pixels, width, height));
+  }
+
+  /**
+   * @param pixels ARGB pixels in the row-major order with the stride equal to the width
+   * @return the whole file
+   */
+  public static byte[] encode(int[] pixels, int width, int height) {
+    final var size = width * height;
+    final var buffer = ByteBuffer.allocate(HEADER_SIZE + size * (CHANNELS + 1) + END_MARKER.length);
+    buffer.putInt(MAGIC).putInt(width).putInt(height).put((byte) CHANNELS).put((byte) SRGB);
+
+    final var index = new int[INDEX_SIZE];
+    var previous = START_PIXEL;
+    var run = 0;
+
+    for (int i = 0; i < size; i++) {
+      final var pixel = pixels[i];
+      if (pixel == previous) {
+        run++;
+        if (run == MAX_RUN || i == size - 1) {
+          buffer.put((byte) (OP_RUN | (run - 1)));
+          run = 0;
+        }
+        continue;
+      }
+      if (run > 0) {
+        buffer.put((byte) (OP_RUN | (run - 1)));
+        run = 0;
+      }
+
+      final var hash = hash(pixel);
+      if (index[hash] == pixel) {
+        buffer.put((byte) (OP_INDEX | hash));
+      }
+      else {
+        index[hash] = pixel;
+        putPixel(buffer, pixel, previous);
+      }
+      previous = pixel;
+    }
+
+    buffer.put(END_MARKER);
+    final var result = new byte[buffer.position()];
+    buffer.flip().get(result);
+    return result;
+  }
+
+  /**
+   * @return pixels of the image, the width and the height are written to the dimensions array
+   */
+  public static int[] read(InputStream input, int[] dimensions) throws IOException {
+    return decode(ByteBuffer.wrap(input.readAllBytes()), dimensions);
+  }
+
+  /**
+   * Decodes the image starting from the current position of the buffer, the buffer is left after the end marker, so
+   * images written one after another are read in a row.
+   *
+   * @param dimensions array where the width and the height are written
+   * @return ARGB pixels in the row-major order
+   */
+  public static int[] decode(ByteBuffer buffer, int[] dimensions) throws IOException {
+    if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+      throw new IOException("Not a QOI image");
+    }
+    final var width = buffer.getInt();
+    final var height = buffer.getInt();
+    buffer.get();
+    buffer.get();
+    dimensions[0] = width;
+    dimensions[1] = height;
+
+    final var pixels = new int[Math.multiplyExact(width, height)];
+    final var index = new int[INDEX_SIZE];
+    var pixel = START_PIXEL;
+    var run = 0;
+
+    for (int i = 0; i < pixels.length; i++) {
+      if (run > 0) {
+        run--;
+      }
+      else {
+        final var op = buffer.get() & 0xff;
+        if (op == OP_RGB) {
+          pixel = (pixel & 0xff000000) | readRgb(buffer);
+        }
+        else if (op == OP_RGBA) {
+          final var rgb = readRgb(buffer);
+          pixel = (buffer.get() & 0xff) << 24 | rgb;
+        }
+        else if ((op & OP_MASK) == OP_INDEX) {
+          pixel = index[op];
+        }
+        else if ((op & OP_MASK) == OP_DIFF) {
+          pixel = withChannels(pixel, ((op >> 4) & 0x03) - 2, ((op >> 2) & 0x03) - 2, (op & 0x03) - 2);
+        }
+        else if ((op & OP_MASK) == OP_LUMA) {
+          final var next = buffer.get() & 0xff;
+          final var greenDifference = (op & 0x3f) - 32;
+          pixel = withChannels(pixel, greenDifference - 8 + ((next >> 4) & 0x0f), greenDifference,
+                  greenDifference - 8 + (next & 0x0f));
+        }
+        else {
+          run = op & 0x3f;
+        }
+        index[hash(pixel)] = pixel;
+      }
+      pixels[i] = pixel;
+    }
+    buffer.position(Math.min(buffer.position() + END_MARKER.length, buffer.limit()));
+    return pixels;
+  }
+
+  private static void putPixel(ByteBuffer buffer, int pixel, int previous) {
+    if ((pixel >>> 24) != (previous >>> 24)) {
+      buffer.put((byte) OP_RGBA).put((byte) (pixel >> 16)).put((byte) (pixel >> 8)).put((byte) pixel)
+              .put((byte) (pixel >>> 24));
+      return;
+    }
+
+    final var redDifference = (byte) ((pixel >> 16) - (previous >> 16));
+    final var greenDifference = (byte) ((pixel >> 8) - (previous >> 8));
+    final var blueDifference = (byte) (pixel - previous);
+    final var redToGreen = redDifference - greenDifference;
+    final var blueToGreen = blueDifference - greenDifference;
+
+    if (isSmall(redDifference, -2, 1) && isSmall(greenDifference, -2, 1) && isSmall(blueDifference, -2, 1)) {
+      buffer.put((byte) (OP_DIFF | (redDifference + 2) << 4 | (greenDifference + 2) << 2 | (blueDifference + 2)));
+    }
+    else if (isSmall(greenDifference, -32, 31) && isSmall(redToGreen, -8, 7) && isSmall(blueToGreen, -8, 7)) {
+      buffer.put((byte) (OP_LUMA | (greenDifference + 32)));
+      buffer.put((byte) ((redToGreen + 8) << 4 | (blueToGreen + 8)));
+    }
+    else {
+      buffer.put((byte) OP_RGB).put((byte) (pixel >> 16)).put((byte) (pixel >> 8)).put((byte) pixel);
+    }
+  }
+
+  private static boolean isSmall(int value, int min, int max) {
+    return value >= min && value <= max;
+  }
+
+  private static int readRgb(ByteBuffer buffer) {
+    return (buffer.get() & 0xff) << 16 | (buffer.get() & 0xff) << 8 | (buffer.get() & 0xff);
+  }
+
+  private static int withChannels(int pixel, int redDifference, int greenDifference, int blueDifference) {
+    final var red = ((pixel >> 16) + redDifference) & 0xff;
+    final var green = ((pixel >> 8) + greenDifference) & 0xff;
+    final var blue = (pixel + blueDifference) & 0xff;
+    return (pixel & 0xff000000) | red << 16 | green << 8 | blue;
+  }
+
+  private static int hash(int pixel) {
+    final var alpha = pixel >>> 24;
+    final var red = (pixel >> 16) & 0xff;
+    final var green = (pixel >> 8) & 0xff;
+    final var blue = pixel & 0xff;
+    return (red * 3 + green * 5 + blue * 7 + alpha * 11) % INDEX_SIZE;
+  }
+}
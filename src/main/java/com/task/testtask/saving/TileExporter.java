@@ -0,0 +1,157 @@
+package com.task.testtask.saving;
+
+import com.task.testtask.components.Tile;
+import com.task.testtask.enums.ExportFormat;
+import com.task.testtask.interfaces.PixelSource;
+import lombok.Builder;
+import lombok.Getter;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * It's a pipeline that exports puzzles to files in parallel.
+ * <p>Every file is read, converted and encoded by one worker of a bounded pool, so only as many converted images as
+ * there are workers live at once. A failed file doesn't stop the others, failures are collected in the result.</p>
+ */
+@Getter
+@Builder
+public class TileExporter {
+  private static final int MAX_PNG_COMPRESSION_LEVEL = 9;
+
+  /**
+   * Format of the files.
+   */
+  @Builder.Default
+  private final ExportFormat format = ExportFormat.PNG;
+
+  /**
+   * Deflate level of PNG files from 0 (no compression, fastest) to 9 (smallest files).
+   */
+  @Builder.Default
+  private final int pngCompressionLevel = 4;
+
+  /**
+   * Count of worker threads.
+   */
+  @Builder.Default
+  private final int parallelism = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * It's a result of the export.
+   *
+   * @param writtenFiles files that were written, sorted by path
+   * @param failures files that weren't written and the reason, sorted by path
+   */
+  public record Result(List<Path> writtenFiles, Map<Path, Exception> failures) {
+    public boolean isSuccessful() {
+      return failures.isEmpty();
+    }
+  }
+
+  /**
+   * Exports tiles to files named {@code image_1}, {@code image_2} and so on in the order of the list.
+   */
+  public CompletableFuture<Result> export(List<Tile> tiles, Path directory) {
+    if (tiles.isEmpty()) {
+      return CompletableFuture.completedFuture(new Result(List.of(), Map.of()));
+    }
+    final var first = tiles.get(0);
+    return export(tiles.size(), first.width(), first.height(),
+            (index, buffer) -> tiles.get(index).readPixels(buffer), directory);
+  }
+
+  /**
+   * Exports puzzles of the same size to files named {@code image_1}, {@code image_2} and so on.
+   *
+   * @param pixelSource source of the pixels, it's called from the worker threads
+   * @return future that completes when every file is either written or failed
+   */
+  public CompletableFuture<Result> export(int count, int width, int height, PixelSource pixelSource, Path directory) {
+    if (pngCompressionLevel < 0 || pngCompressionLevel > MAX_PNG_COMPRESSION_LEVEL) {
+      throw new IllegalArgumentException("PNG compression level must be in [0, 9]: " + pngCompressionLevel);
+    }
+    try {
+      Files.createDirectories(directory);
+    } catch (IOException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+
+    final var workers = createWorkers();
+    final var buffers = ThreadLocal.withInitial(() -> new int[width * height]);
+    final var written = new ConcurrentSkipListMap<Path, Boolean>();
+    final var failures = new ConcurrentSkipListMap<Path, Exception>();
+    final var files = new CompletableFuture<?>[count];
+
+    for (int i = 0; i < count; i++) {
+      final var index = i;
+      final var file = directory.resolve(format.fileName(i + 1));
+      files[i] = CompletableFuture.runAsync(() -> {
+        try {
+          final var pixels = pixelSource.readPixels(index, buffers.get());
+          write(pixels, width, height, file);
+          written.put(file, true);
+        } catch (IOException | RuntimeException e) {
+          failures.put(file, e);
+        }
+      }, workers);
+    }
+
+    return CompletableFuture.allOf(files)
+            .thenApply(ignored -> new Result(List.copyOf(written.keySet()), failures))
+            .whenComplete((result, exception) -> workers.shutdown());
+  }
+
+  private ExecutorService createWorkers() {
+    final var threadNumber = new AtomicInteger();
+    return Executors.newFixedThreadPool(parallelism, runnable -> {
+      final var thread = new Thread(runnable, "tile-exporter-" + threadNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  private void write(int[] pixels, int width, int height, Path file) throws IOException {
+    try (var output = new BufferedOutputStream(Files.newOutputStream(file))) {
+      if (format == ExportFormat.QOI) {
+        Qoi.write(pixels, width, height, output);
+      }
+      else {
+        writePng(pixels, width, height, output);
+      }
+    }
+  }
+
+  private void writePng(int[] pixels, int width, int height, BufferedOutputStream output) throws IOException {
+    final var image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    final var raster = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    System.arraycopy(pixels, 0, raster, 0, width * height);
+
+    final var writer = ImageIO.getImageWritersByFormatName(ExportFormat.PNG.getExtension()).next();
+    final var param = writer.getDefaultWriteParam();
+    param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+    param.setCompressionQuality(1.0f - (float) pngCompressionLevel / MAX_PNG_COMPRESSION_LEVEL);
+
+    try (var imageOutput = new MemoryCacheImageOutputStream(output)) {
+      writer.setOutput(imageOutput);
+      writer.write(null, new IIOImage(image, null, null), param);
+    } finally {
+      writer.dispose();
+    }
+  }
+}
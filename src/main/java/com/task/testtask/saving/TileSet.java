@@ -0,0 +1,103 @@
+package com.task.testtask.saving;
+
+import com.task.testtask.enums.ExportFormat;
+
+import javax.imageio.ImageIO;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * It's a set of puzzle tiles held as raw ARGB pixels, it doesn't need JavaFX to be loaded.
+ *
+ * @param width width of each tile
+ * @param height height of each tile
+ * @param tiles pixels of each tile in the row-major order
+ */
+public record TileSet(int width, int height, List<int[]> tiles) {
+  public int size() {
+    return tiles.size();
+  }
+
+  /**
+   * Cuts an image into tiles the same way the puzzles are cut in the game, the rest that doesn't fit the grid is
+   * dropped.
+   *
+   * @param pixels ARGB pixels of the whole image in the row-major order
+   * @return tiles in the row-major order of the grid
+   */
+  public static TileSet cut(int[] pixels, int width, int height, int rowCount, int colCount) {
+    final var tileWidth = width / colCount;
+    final var tileHeight = height / rowCount;
+    final var tiles = new ArrayList<int[]>(rowCount * colCount);
+
+    for (int y = 0; y < rowCount; y++) {
+      for (int x = 0; x < colCount; x++) {
+        final var tile = new int[tileWidth * tileHeight];
+        var offset = y * tileHeight * width + x * tileWidth;
+        for (int row = 0; row < tileHeight; row++, offset += width) {
+          System.arraycopy(pixels, offset, tile, row * tileWidth, tileWidth);
+        }
+        tiles.add(tile);
+      }
+    }
+    return new TileSet(tileWidth, tileHeight, tiles);
+  }
+
+  /**
+   * Reads tiles named {@code image_1}, {@code image_2} and so on until the next file is missing. Each tile can be
+   * either a PNG or a QOI file.
+   *
+   * @param directory directory that contains the tiles
+   */
+  public static TileSet readDirectory(Path directory) {
+    final var tiles = new ArrayList<int[]>();
+    final var dimensions = new int[2];
+    var width = 0;
+    var height = 0;
+
+    for (int i = 1; ; i++) {
+      final var pngFile = directory.resolve(ExportFormat.PNG.fileName(i));
+      final var qoiFile = directory.resolve(ExportFormat.QOI.fileName(i));
+      final var file = Files.exists(pngFile) ? pngFile : qoiFile;
+      if (!Files.exists(file)) {
+        break;
+      }
+      try {
+        final var pixels = readTile(file, dimensions);
+        if (tiles.isEmpty()) {
+          width = dimensions[0];
+          height = dimensions[1];
+        }
+        else if (dimensions[0] != width || dimensions[1] != height) {
+          throw new IllegalArgumentException("All tiles must have the same size: " + file);
+        }
+        tiles.add(pixels);
+      } catch (IOException e) {
+        throw new RuntimeException("Error reading image: " + e.getMessage());
+      }
+    }
+
+    if (tiles.isEmpty()) {
+      throw new IllegalArgumentException("No tiles found in " + directory);
+    }
+    return new TileSet(width, height, tiles);
+  }
+
+  private static int[] readTile(Path file, int[] dimensions) throws IOException {
+    if (file.toString().endsWith(ExportFormat.QOI.getExtension())) {
+      try (var input = Files.newInputStream(file)) {
+        return Qoi.read(input, dimensions);
+      }
+    }
+    final var image = ImageIO.read(file.toFile());
+    if (image == null) {
+      throw new IllegalArgumentException("Unsupported image format: " + file);
+    }
+    dimensions[0] = image.getWidth();
+    dimensions[1] = image.getHeight();
+    return image.getRGB(0, 0, dimensions[0], dimensions[1], null, 0, dimensions[0]);
+  }
+}
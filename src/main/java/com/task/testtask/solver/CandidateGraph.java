@@ -0,0 +1,112 @@
+package com.task.testtask.solver;
+
+import com.task.testtask.enums.Direction;
+
+import java.util.Arrays;
+
+/**
+ * It's a sparse graph of ranked neighbour candidates: for every side of every puzzle state it keeps only the
+ * {@code k} most similar puzzle states, best first.
+ * <p>A state is a puzzle in one of its orientations: {@code state = piece * orientationsCount + quarterTurns}. When
+ * puzzles can't be rotated there's a single orientation and a state is just an index of a puzzle.</p>
+ * <p>Candidates and scores are laid out as {@code [state][side][rank]} in primitive arrays, so memory is proportional
+ * to {@code N * k}. Missing candidates are marked with {@link #NO_CANDIDATE}.</p>
+ */
+public class CandidateGraph {
+  public static final int NO_CANDIDATE = -1;
+  static final int SIDES_COUNT = Direction.values().length;
+
+  private final int piecesCount;
+  private final int orientationsCount;
+  private final int candidatesCount;
+  private final int[] candidates;
+  private final double[] scores;
+
+  /**
+   * @param orientationsCount it's 1 when puzzles keep their orientation and 4 when they can be rotated
+   */
+  public CandidateGraph(int piecesCount, int orientationsCount, int candidatesCount) {
+    this.piecesCount = piecesCount;
+    this.orientationsCount = orientationsCount;
+    this.candidatesCount = candidatesCount;
+    this.candidates = new int[piecesCount * orientationsCount * SIDES_COUNT * candidatesCount];
+    this.scores = new double[candidates.length];
+    Arrays.fill(candidates, NO_CANDIDATE);
+    Arrays.fill(scores, Double.NEGATIVE_INFINITY);
+  }
+
+  public int getPiecesCount() {
+    return piecesCount;
+  }
+
+  public int getOrientationsCount() {
+    return orientationsCount;
+  }
+
+  public int getStatesCount() {
+    return piecesCount * orientationsCount;
+  }
+
+  public int getCandidatesCount() {
+    return candidatesCount;
+  }
+
+  public int pieceOf(int state) {
+    return state / orientationsCount;
+  }
+
+  /**
+   * @return count of 90 degree clockwise turns of the puzzle in the state
+   */
+  public int quarterTurnsOf(int state) {
+    return state % orientationsCount;
+  }
+
+  public int stateOf(int piece, int quarterTurns) {
+    return piece * orientationsCount + Math.floorMod(quarterTurns, orientationsCount);
+  }
+
+  public int getCandidate(int state, Direction side, int rank) {
+    return candidates[offset(state, side) + rank];
+  }
+
+  public double getScore(int state, Direction side, int rank) {
+    return scores[offset(state, side) + rank];
+  }
+
+  /**
+   * Inserts the candidate into the ranked list of the side if it's better than the worst one kept. Candidates with
+   * equal scores keep the order of insertion.
+   */
+  public void offer(int state, Direction side, int candidate, double score) {
+    final var offset = offset(state, side);
+    var position = candidatesCount;
+    while (position > 0 && score > scores[offset + position - 1]) {
+      position--;
+    }
+    if (position == candidatesCount) {
+      return;
+    }
+    System.arraycopy(candidates, offset + position, candidates, offset + position + 1, candidatesCount - position - 1);
+    System.arraycopy(scores, offset + position, scores, offset + position + 1, candidatesCount - position - 1);
+    candidates[offset + position] = candidate;
+    scores[offset + position] = score;
+  }
+
+  /**
+   * @return score of the candidate on the side, or negative infinity if it isn't among the kept ones
+   */
+  public double findScore(int state, Direction side, int candidate) {
+    final var offset = offset(state, side);
+    for (int i = 0; i < candidatesCount; i++) {
+      if (candidates[offset + i] == candidate) {
+        return scores[offset + i];
+      }
+    }
+    return Double.NEGATIVE_INFINITY;
+  }
+
+  private int offset(int state, Direction side) {
+    return (state * SIDES_COUNT + side.ordinal()) * candidatesCount;
+  }
+}
@@ -0,0 +1,620 @@
+package com.task.testtask.solver;
+
+import com.task.testtask.enums.Direction;
+import com.task.testtask.enums.SolverPhase;
+import com.task.testtask.interfaces.SolverListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * It's an assembly engine that places puzzles on the grid using the candidate graph.
+ * <p>Logic of the assembly is following:</p>
+ * <p>1. Every candidate link becomes an edge, links between best buddies (puzzles that are the best candidates of
+ * each other on the touching sides) go first, the ones that beat the second candidates by the widest margin first.
+ * Dark or flat sides look alike, so they match many sides with high scores, and a link between them is trusted
+ * only after the distinct ones. All other links are sorted by score</p>
+ * <p>2. Edges are processed Kruskal-style: every link merges two clusters of puzzles if the merged cluster fits into
+ * the grid and no two puzzles take the same cell. Clusters are kept in a union-find structure, the smaller cluster is
+ * always moved (and rotated, when puzzles can be rotated) into the frame of the bigger one, so each puzzle is moved
+ * only a logarithmic count of times</p>
+ * <p>3. The biggest cluster is put on the grid and all empty cells are filled greedily, the best scored cell first</p>
+ * <p>4. When puzzles can be rotated, the whole grid is turned so that most of the puzzles keep their orientation</p>
+ * <p>Occupied cells of all clusters are kept in one open-addressing set of primitive keys, and the candidate scores of
+ * a cell are merged in reused arrays, so merging and filling don't box or allocate per link.</p>
+ */
+public class ClusterAssembler {
+  private final CandidateGraph graph;
+  private final int rowsCount;
+  private final int columnsCount;
+  private final double minLinkScore;
+  private final SolverMetrics metrics;
+
+  private final int[] parent;
+  private final int[] size;
+  private final int[] x;
+  private final int[] y;
+  private final int[] quarterTurns;
+  private final int[] nextMember;
+  private final int[] lastMember;
+  private final int[] minX;
+  private final int[] maxX;
+  private final int[] minY;
+  private final int[] maxY;
+  private final CellSet occupiedCells;
+  private final int[] proposedStates;
+  private final double[] proposedScores;
+
+  /**
+   * @param graph candidate graph of the puzzles
+   * @param rowsCount count of rows of the grid
+   * @param columnsCount count of columns of the grid
+   * @param minLinkScore links that aren't between best buddies and have lower score are rejected
+   */
+  public ClusterAssembler(CandidateGraph graph, int rowsCount, int columnsCount, double minLinkScore) {
+    this(graph, rowsCount, columnsCount, minLinkScore,
+            new SolverMetrics(graph.getPiecesCount(), SolverListener.NONE));
+  }
+
+  /**
+   * @param metrics metrics where the assembly phases and link counters are recorded
+   */
+  public ClusterAssembler(CandidateGraph graph, int rowsCount, int columnsCount, double minLinkScore,
+                          SolverMetrics metrics) {
+    final var piecesCount = graph.getPiecesCount();
+    if (piecesCount > rowsCount * columnsCount) {
+      throw new IllegalArgumentException(String.format("%d puzzles don't fit into %dx%d grid",
+              piecesCount, rowsCount, columnsCount));
+    }
+    this.graph = graph;
+    this.rowsCount = rowsCount;
+    this.columnsCount = columnsCount;
+    this.minLinkScore = minLinkScore;
+    this.metrics = metrics;
+
+    parent = new int[piecesCount];
+    size = new int[piecesCount];
+    x = new int[piecesCount];
+    y = new int[piecesCount];
+    quarterTurns = new int[piecesCount];
+    nextMember = new int[piecesCount];
+    lastMember = new int[piecesCount];
+    minX = new int[piecesCount];
+    maxX = new int[piecesCount];
+    minY = new int[piecesCount];
+    maxY = new int[piecesCount];
+    occupiedCells = new CellSet(piecesCount);
+    proposedStates = new int[Direction.values().length * graph.getCandidatesCount()];
+    proposedScores = new double[proposedStates.length];
+
+    for (int i = 0; i < piecesCount; i++) {
+      parent[i] = i;
+      size[i] = 1;
+      nextMember[i] = CandidateGraph.NO_CANDIDATE;
+      lastMember[i] = i;
+      occupiedCells.add(cellKey(i, 0, 0));
+    }
+  }
+
+  /**
+   * @return array where index is a cell of the grid in the row-major order and value is a puzzle state placed there,
+   * or {@link CandidateGraph#NO_CANDIDATE} if the cell is empty
+   */
+  public int[] assemble() {
+    final var grid = new int[rowsCount * columnsCount];
+    Arrays.fill(grid, CandidateGraph.NO_CANDIDATE);
+    if (graph.getPiecesCount() == 0) {
+      return grid;
+    }
+
+    metrics.measure(SolverPhase.CLUSTER_MERGING, this::mergeClusters);
+
+    return metrics.measure(SolverPhase.GRID_FILLING, () -> {
+      final var placed = new boolean[graph.getPiecesCount()];
+      placeBiggestCluster(grid, placed);
+      fillEmptyCells(grid, placed);
+      return graph.getOrientationsCount() == 1 ? grid : turnToMostlyUpright(grid);
+    });
+  }
+
+  public int find(int piece) {
+    while (parent[piece] != piece) {
+      parent[piece] = parent[parent[piece]];
+      piece = parent[piece];
+    }
+    return piece;
+  }
+
+  private void mergeClusters() {
+    long accepted = 0;
+    long rejected = 0;
+    long skipped = 0;
+
+    for (var link : collectLinks()) {
+      if (!link.bestBuddies() && link.score() < minLinkScore) {
+        rejected++;
+      }
+      else if (merge(link.first(), link.side(), link.second())) {
+        accepted++;
+      }
+      else {
+        skipped++;
+      }
+    }
+    metrics.addLinks(accepted, rejected, skipped);
+  }
+
+  /**
+   * Collects links from the candidate graph. Every link is stored once, from the left or the top state, a link that
+   * both states keep takes the score from the left or the top one.
+   */
+  private List<Link> collectLinks() {
+    final var links = new ArrayList<Link>();
+
+    for (int state = 0; state < graph.getStatesCount(); state++) {
+      for (var side : Direction.values()) {
+        final var isForward = side == Direction.RIGHT || side == Direction.BOTTOM;
+
+        for (int rank = 0; rank < graph.getCandidatesCount(); rank++) {
+          final var candidate = graph.getCandidate(state, side, rank);
+          if (candidate == CandidateGraph.NO_CANDIDATE) {
+            break;
+          }
+          if (isForward) {
+            links.add(createLink(state, side, candidate, graph.getScore(state, side, rank)));
+          }
+          else if (graph.findScore(candidate, side.opposite(), state) == Double.NEGATIVE_INFINITY) {
+            links.add(createLink(candidate, side.opposite(), state, graph.getScore(state, side, rank)));
+          }
+        }
+      }
+    }
+
+    links.sort(Link::compareTo);
+    return links;
+  }
+
+  private Link createLink(int first, Direction side, int second, double score) {
+    final var bestBuddies = areBestBuddies(first, side, second);
+    final var margin = bestBuddies ?
+            Math.min(findMargin(first, side), findMargin(second, side.opposite())) :
+            0;
+    return new Link(first, side, second, score, bestBuddies, margin);
+  }
+
+  private boolean areBestBuddies(int first, Direction side, int second) {
+    return graph.getCandidate(first, side, 0) == second && graph.getCandidate(second, side.opposite(), 0) == first;
+  }
+
+  /**
+   * @return how much the best candidate of the side is scored higher than the second one, a side with a single
+   * candidate has no rival
+   */
+  private double findMargin(int state, Direction side) {
+    if (graph.getCandidatesCount() < 2 || graph.getCandidate(state, side, 1) == CandidateGraph.NO_CANDIDATE) {
+      return Double.POSITIVE_INFINITY;
+    }
+    return graph.getScore(state, side, 0) - graph.getScore(state, side, 1);
+  }
+
+  /**
+   * Merges clusters of two puzzle states so that the second one is located on the side of the first one. The link is
+   * turned into the frame of the bigger cluster, and the smaller cluster is turned and moved to match it.
+   *
+   * @return true if clusters were merged
+   */
+  private boolean merge(int firstState, Direction side, int secondState) {
+    var fixedPiece = graph.pieceOf(firstState);
+    var movingPiece = graph.pieceOf(secondState);
+    var fixedLinkTurns = graph.quarterTurnsOf(firstState);
+    var movingLinkTurns = graph.quarterTurnsOf(secondState);
+    var direction = side;
+
+    var fixedRoot = find(fixedPiece);
+    var movingRoot = find(movingPiece);
+    if (fixedRoot == movingRoot) {
+      return false;
+    }
+    if (size[fixedRoot] < size[movingRoot]) {
+      fixedPiece = graph.pieceOf(secondState);
+      movingPiece = graph.pieceOf(firstState);
+      fixedLinkTurns = graph.quarterTurnsOf(secondState);
+      movingLinkTurns = graph.quarterTurnsOf(firstState);
+      direction = side.opposite();
+      fixedRoot = movingRoot;
+      movingRoot = find(movingPiece);
+    }
+
+    final var frameTurns = quarterTurns[fixedPiece] - fixedLinkTurns;
+    final var turns = movingLinkTurns + frameTurns - quarterTurns[movingPiece];
+    final var target = direction.rotateClockwise(frameTurns);
+    final var shiftX = x[fixedPiece] + offsetX(target) - rotatedX(x[movingPiece], y[movingPiece], turns);
+    final var shiftY = y[fixedPiece] + offsetY(target) - rotatedY(x[movingPiece], y[movingPiece], turns);
+
+    var newMinX = minX[fixedRoot];
+    var newMaxX = maxX[fixedRoot];
+    var newMinY = minY[fixedRoot];
+    var newMaxY = maxY[fixedRoot];
+
+    for (int member = movingRoot; member != CandidateGraph.NO_CANDIDATE; member = nextMember[member]) {
+      final var memberX = rotatedX(x[member], y[member], turns) + shiftX;
+      final var memberY = rotatedY(x[member], y[member], turns) + shiftY;
+      if (occupiedCells.contains(cellKey(fixedRoot, memberX, memberY))) {
+        return false;
+      }
+      newMinX = Math.min(newMinX, memberX);
+      newMaxX = Math.max(newMaxX, memberX);
+      newMinY = Math.min(newMinY, memberY);
+      newMaxY = Math.max(newMaxY, memberY);
+    }
+    if (newMaxX - newMinX + 1 > columnsCount || newMaxY - newMinY + 1 > rowsCount) {
+      return false;
+    }
+
+    for (int member = movingRoot; member != CandidateGraph.NO_CANDIDATE; member = nextMember[member]) {
+      final var memberX = rotatedX(x[member], y[member], turns) + shiftX;
+      final var memberY = rotatedY(x[member], y[member], turns) + shiftY;
+      x[member] = memberX;
+      y[member] = memberY;
+      quarterTurns[member] = Math.floorMod(quarterTurns[member] + turns, graph.getOrientationsCount());
+      occupiedCells.add(cellKey(fixedRoot, memberX, memberY));
+    }
+
+    minX[fixedRoot] = newMinX;
+    maxX[fixedRoot] = newMaxX;
+    minY[fixedRoot] = newMinY;
+    maxY[fixedRoot] = newMaxY;
+
+    nextMember[lastMember[fixedRoot]] = movingRoot;
+    lastMember[fixedRoot] = lastMember[movingRoot];
+    parent[movingRoot] = fixedRoot;
+    size[fixedRoot] += size[movingRoot];
+    return true;
+  }
+
+  private void placeBiggestCluster(int[] grid, boolean[] placed) {
+    var biggestRoot = 0;
+    for (int i = 0; i < parent.length; i++) {
+      if (parent[i] == i && size[i] > size[biggestRoot]) {
+        biggestRoot = i;
+      }
+    }
+
+    for (int member = biggestRoot; member != CandidateGraph.NO_CANDIDATE; member = nextMember[member]) {
+      final var column = x[member] - minX[biggestRoot];
+      final var row = y[member] - minY[biggestRoot];
+      grid[row * columnsCount + column] = graph.stateOf(member, quarterTurns[member]);
+      placed[member] = true;
+    }
+  }
+
+  /**
+   * Fills empty cells next to the placed puzzles, the cell with the best scored candidate goes first. Cells that no
+   * placed puzzle has a candidate for are filled with the rest of the puzzles at the end.
+   */
+  private void fillEmptyCells(int[] grid, boolean[] placed) {
+    final var proposals = new PriorityQueue<>(Comparator.comparingDouble(Proposal::score).reversed()
+            .thenComparingInt(Proposal::cell));
+
+    for (int cell = 0; cell < grid.length; cell++) {
+      if (grid[cell] != CandidateGraph.NO_CANDIDATE) {
+        proposeNeighbours(cell, grid, placed, proposals);
+      }
+    }
+
+    while (!proposals.isEmpty()) {
+      final var proposal = proposals.poll();
+      if (grid[proposal.cell()] != CandidateGraph.NO_CANDIDATE) {
+        continue;
+      }
+      if (placed[graph.pieceOf(proposal.state())]) {
+        propose(proposal.cell(), grid, placed, proposals);
+        continue;
+      }
+      grid[proposal.cell()] = proposal.state();
+      placed[graph.pieceOf(proposal.state())] = true;
+      proposeNeighbours(proposal.cell(), grid, placed, proposals);
+    }
+
+    var piece = 0;
+    for (int cell = 0; cell < grid.length; cell++) {
+      if (grid[cell] != CandidateGraph.NO_CANDIDATE) {
+        continue;
+      }
+      while (piece < placed.length && placed[piece]) {
+        piece++;
+      }
+      if (piece == placed.length) {
+        break;
+      }
+      grid[cell] = graph.stateOf(piece, 0);
+      placed[piece] = true;
+    }
+  }
+
+  private void proposeNeighbours(int cell, int[] grid, boolean[] placed, PriorityQueue<Proposal> proposals) {
+    for (var side : Direction.values()) {
+      final var neighbour = neighbourCell(cell, side);
+      if (neighbour != CandidateGraph.NO_CANDIDATE && grid[neighbour] == CandidateGraph.NO_CANDIDATE) {
+        propose(neighbour, grid, placed, proposals);
+      }
+    }
+  }
+
+  /**
+   * Finds the best not placed candidate for the empty cell. Score of a candidate is its mean score over all placed
+   * neighbours of the cell, a neighbour that doesn't keep the candidate contributes its worst kept score.
+   */
+  private void propose(int cell, int[] grid, boolean[] placed, PriorityQueue<Proposal> proposals) {
+    var proposedCount = 0;
+    var neighboursCount = 0;
+    var worstScoresSum = 0.0;
+
+    for (var side : Direction.values()) {
+      final var neighbourCell = neighbourCell(cell, side);
+      if (neighbourCell == CandidateGraph.NO_CANDIDATE || grid[neighbourCell] == CandidateGraph.NO_CANDIDATE) {
+        continue;
+      }
+      final var neighbour = grid[neighbourCell];
+      final var neighbourSide = side.opposite();
+      final var worstScore = findWorstScore(neighbour, neighbourSide);
+      neighboursCount++;
+
+      for (int rank = 0; rank < graph.getCandidatesCount(); rank++) {
+        final var candidate = graph.getCandidate(neighbour, neighbourSide, rank);
+        if (candidate == CandidateGraph.NO_CANDIDATE) {
+          break;
+        }
+        if (!placed[graph.pieceOf(candidate)]) {
+          final var score = graph.getScore(neighbour, neighbourSide, rank) - worstScore;
+          var index = 0;
+          while (index < proposedCount && proposedStates[index] != candidate) {
+            index++;
+          }
+          if (index == proposedCount) {
+            proposedStates[index] = candidate;
+            proposedScores[index] = 0;
+            proposedCount++;
+          }
+          proposedScores[index] += score;
+        }
+      }
+      worstScoresSum += worstScore;
+    }
+
+    var bestState = CandidateGraph.NO_CANDIDATE;
+    var bestScore = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < proposedCount; i++) {
+      final var state = proposedStates[i];
+      final var score = proposedScores[i];
+      if (score > bestScore || (score == bestScore && state < bestState)) {
+        bestState = state;
+        bestScore = score;
+      }
+    }
+    if (bestState != CandidateGraph.NO_CANDIDATE) {
+      proposals.add(new Proposal((bestScore + worstScoresSum) / neighboursCount, cell, bestState));
+    }
+  }
+
+  private double findWorstScore(int state, Direction side) {
+    for (int rank = graph.getCandidatesCount() - 1; rank >= 0; rank--) {
+      if (graph.getCandidate(state, side, rank) != CandidateGraph.NO_CANDIDATE) {
+        return graph.getScore(state, side, rank);
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Turns the whole grid so that the most puzzles end up in their original orientation. The grid is turned by 90
+   * degrees only if it's square.
+   */
+  private int[] turnToMostlyUpright(int[] grid) {
+    final var orientationsCount = graph.getOrientationsCount();
+    final var uprightCounts = new int[orientationsCount];
+    for (var state : grid) {
+      if (state != CandidateGraph.NO_CANDIDATE) {
+        uprightCounts[Math.floorMod(-graph.quarterTurnsOf(state), orientationsCount)]++;
+      }
+    }
+
+    var bestTurns = 0;
+    for (int turns = 1; turns < orientationsCount; turns++) {
+      final var isAllowed = turns % 2 == 0 || rowsCount == columnsCount;
+      if (isAllowed && uprightCounts[turns] > uprightCounts[bestTurns]) {
+        bestTurns = turns;
+      }
+    }
+    if (bestTurns == 0) {
+      return grid;
+    }
+
+    final var turnedGrid = new int[grid.length];
+    for (int cell = 0; cell < grid.length; cell++) {
+      final var state = grid[cell];
+      final var column = rotatedX(cell % columnsCount, cell / columnsCount, bestTurns, columnsCount, rowsCount);
+      final var row = rotatedY(cell % columnsCount, cell / columnsCount, bestTurns, columnsCount, rowsCount);
+      turnedGrid[row * columnsCount + column] = state == CandidateGraph.NO_CANDIDATE ?
+              state :
+              graph.stateOf(graph.pieceOf(state), graph.quarterTurnsOf(state) + bestTurns);
+    }
+    return turnedGrid;
+  }
+
+  /**
+   * @return cell located on the side of the given cell, or {@link CandidateGraph#NO_CANDIDATE} if it's outside the grid
+   */
+  private int neighbourCell(int cell, Direction side) {
+    final var column = cell % columnsCount + offsetX(side);
+    final var row = cell / columnsCount + offsetY(side);
+    if (column < 0 || column >= columnsCount || row < 0 || row >= rowsCount) {
+      return CandidateGraph.NO_CANDIDATE;
+    }
+    return row * columnsCount + column;
+  }
+
+  private static int offsetX(Direction side) {
+    return switch (side) {
+      case LEFT -> -1;
+      case RIGHT -> 1;
+      case TOP, BOTTOM -> 0;
+    };
+  }
+
+  private static int offsetY(Direction side) {
+    return switch (side) {
+      case TOP -> -1;
+      case BOTTOM -> 1;
+      case LEFT, RIGHT -> 0;
+    };
+  }
+
+  /**
+   * Turns the point clockwise around the origin, the y-axis goes down.
+   */
+  private static int rotatedX(int x, int y, int turns) {
+    return switch (Math.floorMod(turns, 4)) {
+      case 1 -> -y;
+      case 2 -> -x;
+      case 3 -> y;
+      default -> x;
+    };
+  }
+
+  private static int rotatedY(int x, int y, int turns) {
+    return switch (Math.floorMod(turns, 4)) {
+      case 1 -> x;
+      case 2 -> -y;
+      case 3 -> -x;
+      default -> y;
+    };
+  }
+
+  /**
+   * Turns the cell of the grid clockwise, the turned grid is aligned to the origin again.
+   */
+  private static int rotatedX(int column, int row, int turns, int columnsCount, int rowsCount) {
+    return switch (Math.floorMod(turns, 4)) {
+      case 1 -> rowsCount - 1 - row;
+      case 2 -> columnsCount - 1 - column;
+      case 3 -> row;
+      default -> column;
+    };
+  }
+
+  private static int rotatedY(int column, int row, int turns, int columnsCount, int rowsCount) {
+    return switch (Math.floorMod(turns, 4)) {
+      case 1 -> column;
+      case 2 -> rowsCount - 1 - row;
+      case 3 -> columnsCount - 1 - column;
+      default -> row;
+    };
+  }
+
+  /**
+   * Packs the cell of the cluster into a non-negative key. Members of a cluster are never farther than the size of
+   * the grid from its root, and the root is always at the origin, so 16 bits are enough for each coordinate of grids
+   * up to 16384 cells wide.
+   */
+  private static long cellKey(int root, int x, int y) {
+    return (long) root << 32 | (long) (x & 0xffff) << 16 | y & 0xffff;
+  }
+
+  /**
+   * It's a set of cell keys with linear probing over a primitive array. Keys are never removed: cells of a cluster
+   * that was merged into another one stay under its old root, which is never looked up again.
+   */
+  private static class CellSet {
+    private static final long EMPTY = -1;
+
+    private long[] keys;
+    private int size;
+
+    CellSet(int expectedSize) {
+      keys = new long[Integer.highestOneBit(Math.max(expectedSize, 2) * 4 - 1) << 1];
+      Arrays.fill(keys, EMPTY);
+    }
+
+    boolean contains(long key) {
+      final var mask = keys.length - 1;
+      for (int slot = hash(key) & mask; keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+        if (keys[slot] == key) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    void add(long key) {
+      if (2 * (size + 1) > keys.length) {
+        grow();
+      }
+      final var mask = keys.length - 1;
+      var slot = hash(key) & mask;
+      while (keys[slot] != EMPTY) {
+        if (keys[slot] == key) {
+          return;
+        }
+        slot = (slot + 1) & mask;
+      }
+      keys[slot] = key;
+      size++;
+    }
+
+    private void grow() {
+      final var oldKeys = keys;
+      keys = new long[oldKeys.length * 2];
+      Arrays.fill(keys, EMPTY);
+      size = 0;
+      for (var key : oldKeys) {
+        if (key != EMPTY) {
+          add(key);
+        }
+      }
+    }
+
+    private static int hash(long key) {
+      final var mixed = key * 0x9e3779b97f4a7c15L;
+      return (int) (mixed ^ mixed >>> 32);
+    }
+  }
+
+  /**
+   * @param margin the smaller of the margins of both sides for links between best buddies, 0 for all others
+   */
+  private record Link(int first, Direction side, int second, double score, boolean bestBuddies, double margin)
+          implements Comparable<Link> {
+
+    /**
+     * Links between best buddies go first, then links with wider margins and higher scores. The rest keeps the order
+     * deterministic.
+     */
+    @Override
+    public int compareTo(Link other) {
+      if (bestBuddies != other.bestBuddies) {
+        return bestBuddies ? -1 : 1;
+      }
+      var result = Double.compare(other.margin, margin);
+      if (result == 0) {
+        result = Double.compare(other.score, score);
+      }
+      if (result == 0) {
+        result = Integer.compare(first, other.first);
+      }
+      if (result == 0) {
+        result = side.compareTo(other.side);
+      }
+      if (result == 0) {
+        result = Integer.compare(second, other.second);
+      }
+      return result;
+    }
+  }
+
+  private record Proposal(double score, int cell, int state) {
+  }
+}
@@ -0,0 +1,107 @@
+package com.task.testtask.solver;
+
+import com.task.testtask.enums.Direction;
+
+/**
+ * It's a dense matrix of similarity percentages between sides of puzzles.
+ * <p>When puzzles keep their orientation, only opposite sides can touch each other and scores are laid out as
+ * {@code [piece][side][otherPiece]}. When puzzles can be rotated, every pair of sides can touch, and scores are laid
+ * out as {@code [piece][side][otherPiece][otherSide]}. Scores of rotated puzzles are never stored separately, they
+ * are looked up by re-indexing the sides.</p>
+ */
+public class CompatibilityMatrix {
+  static final int SIDES_COUNT = Direction.values().length;
+
+  private final int piecesCount;
+  private final boolean allSidePairs;
+  private final double[] scores;
+
+  CompatibilityMatrix(int piecesCount, boolean allSidePairs, double[] scores) {
+    this.piecesCount = piecesCount;
+    this.allSidePairs = allSidePairs;
+    this.scores = scores;
+  }
+
+  public int getPiecesCount() {
+    return piecesCount;
+  }
+
+  /**
+   * @return similarity percentage between the side of the piece and the opposite side of the other piece
+   */
+  public double getScore(int piece, Direction side, int otherPiece) {
+    return getScore(piece, side, otherPiece, side.opposite());
+  }
+
+  /**
+   * @return similarity percentage between the side of the piece and the side of the other piece
+   */
+  public double getScore(int piece, Direction side, int otherPiece, Direction otherSide) {
+    if (!allSidePairs && otherSide != side.opposite()) {
+      throw new IllegalArgumentException("Only opposite sides are compared when puzzles can't be rotated");
+    }
+    return scores[rowOffset(piece, side) + columnIndex(otherPiece, otherSide)];
+  }
+
+  /**
+   * @return index of the most similar piece, when several pieces have the same score the first one is taken
+   */
+  public int getBestMatch(int piece, Direction side) {
+    var bestIndex = 0;
+    for (int i = 1; i < piecesCount; i++) {
+      if (getScore(piece, side, i) > getScore(piece, side, bestIndex)) {
+        bestIndex = i;
+      }
+    }
+    return bestIndex;
+  }
+
+  public double getBestScore(int piece, Direction side) {
+    return getScore(piece, side, getBestMatch(piece, side));
+  }
+
+  /**
+   * Keeps only the {@code k} best candidates of every side. A puzzle is never a candidate for itself. When puzzles
+   * can be rotated, every rotation of a puzzle is a separate candidate.
+   */
+  public CandidateGraph toCandidateGraph(int k) {
+    final var orientationsCount = allSidePairs ? SIDES_COUNT : 1;
+    final var statesCount = piecesCount * orientationsCount;
+    final var graph = new CandidateGraph(piecesCount, orientationsCount,
+            Math.min(k, statesCount - orientationsCount));
+
+    for (int state = 0; state < statesCount; state++) {
+      final var piece = graph.pieceOf(state);
+      final var quarterTurns = graph.quarterTurnsOf(state);
+
+      for (var side : Direction.values()) {
+        final var originalSide = side.rotateClockwise(-quarterTurns);
+        for (int otherState = 0; otherState < statesCount; otherState++) {
+          final var otherPiece = graph.pieceOf(otherState);
+          if (otherPiece == piece) {
+            continue;
+          }
+          final var otherSide = side.opposite().rotateClockwise(-graph.quarterTurnsOf(otherState));
+          graph.offer(state, side, otherState, getScore(piece, originalSide, otherPiece, otherSide));
+        }
+      }
+    }
+    return graph;
+  }
+
+  static int rowOffset(int piece, Direction side, int piecesCount, boolean allSidePairs) {
+    return (piece * SIDES_COUNT + side.ordinal()) * piecesCount * (allSidePairs ? SIDES_COUNT : 1);
+  }
+
+  static int columnIndex(int otherPiece, Direction otherSide, boolean allSidePairs) {
+    return allSidePairs ? otherPiece * SIDES_COUNT + otherSide.ordinal() : otherPiece;
+  }
+
+  private int rowOffset(int piece, Direction side) {
+    return rowOffset(piece, side, piecesCount, allSidePairs);
+  }
+
+  private int columnIndex(int otherPiece, Direction otherSide) {
+    return columnIndex(otherPiece, otherSide, allSidePairs);
+  }
+}
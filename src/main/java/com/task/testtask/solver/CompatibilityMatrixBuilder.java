@@ -0,0 +1,267 @@
+package com.task.testtask.solver;
+
+import com.task.testtask.enums.Direction;
+import com.task.testtask.enums.ScoreMetric;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+/**
+ * It's a builder that computes {@link CompatibilityMatrix} in parallel tiles on a {@link ForkJoinPool}.
+ * <p>Every cell is computed independently from the cached edge descriptors, so the result doesn't depend on the
+ * parallelism level and is identical to the sequential one. The cancellation flag is checked before every row, a
+ * cancelled build throws {@link CancellationException}.</p>
+ * <p>When only the best candidates of every side are needed, {@link #build(EdgeDescriptors, int)} skips the pairs of
+ * {@link ScoreMetric#PIXEL_DISSIMILARITY} whose cheap bound can't reach the best scores found in the row.</p>
+ */
+public class CompatibilityMatrixBuilder {
+  private static final int ROWS_PER_TILE = 16;
+  private static final Direction[] SIDES = Direction.values();
+
+  private final int parallelism;
+  private final ScoreMetric metric;
+  private final boolean allSidePairs;
+  private final BooleanSupplier cancelled;
+  private final LongAdder comparisonsCount = new LongAdder();
+
+  /**
+   * @param parallelism count of worker threads, {@code 1} computes the matrix on the calling thread
+   * @param metric metric used to compare two sides
+   * @param allSidePairs defines whether every pair of sides is compared, it's needed when puzzles can be rotated
+   */
+  public CompatibilityMatrixBuilder(int parallelism, ScoreMetric metric, boolean allSidePairs) {
+    this(parallelism, metric, allSidePairs, () -> false);
+  }
+
+  /**
+   * @param cancelled returns true when the build must stop
+   */
+  public CompatibilityMatrixBuilder(int parallelism, ScoreMetric metric, boolean allSidePairs,
+                                    BooleanSupplier cancelled) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+    }
+    this.parallelism = parallelism;
+    this.metric = metric;
+    this.allSidePairs = allSidePairs;
+    this.cancelled = cancelled;
+  }
+
+  public CompatibilityMatrixBuilder(SolverOptions options) {
+    this(options.getParallelism(), options.getMetric(), options.isRotationAware(),
+            options.getListener()::isCancelled);
+  }
+
+  /**
+   * Computes every cell of the matrix.
+   */
+  public CompatibilityMatrix build(EdgeDescriptors edgeDescriptors) {
+    return build(edgeDescriptors, 0);
+  }
+
+  /**
+   * Computes the matrix for the candidate graph of {@code candidatesCount} candidates. The graph built by
+   * {@link CompatibilityMatrix#toCandidateGraph(int)} is the same as from the full matrix, but a cell that can't be
+   * among the best candidates of its row may hold {@link Double#NEGATIVE_INFINITY} instead of its score.
+   *
+   * @param candidatesCount count of candidates kept for every side, 0 computes every cell
+   */
+  public CompatibilityMatrix build(EdgeDescriptors edgeDescriptors, int candidatesCount) {
+    if (allSidePairs && !edgeDescriptors.hasSquarePuzzles()) {
+      throw new IllegalArgumentException("Only square puzzles can be rotated");
+    }
+    final var piecesCount = edgeDescriptors.getPiecesCount();
+    final var rowsCount = piecesCount * CompatibilityMatrix.SIDES_COUNT;
+    final var columnsCount = piecesCount * (allSidePairs ? CompatibilityMatrix.SIDES_COUNT : 1);
+    final var scores = new double[rowsCount * columnsCount];
+    final var scorer = new EdgeScorer(edgeDescriptors, metric);
+    final var prunedCandidatesCount = metric == ScoreMetric.PIXEL_DISSIMILARITY ? candidatesCount : 0;
+    final var task = new TileTask(scorer, allSidePairs, prunedCandidatesCount, cancelled, comparisonsCount, scores, 0,
+            rowsCount);
+
+    if (parallelism == 1) {
+      task.computeRows();
+    }
+    else {
+      final var pool = new ForkJoinPool(parallelism);
+      try {
+        pool.invoke(task);
+      } finally {
+        pool.shutdown();
+      }
+    }
+    return new CompatibilityMatrix(piecesCount, allSidePairs, scores);
+  }
+
+  /**
+   * @return count of pairs of sides compared pixel by pixel or by mean colors in all builds, bounds aren't counted
+   */
+  public long getComparisonsCount() {
+    return comparisonsCount.sum();
+  }
+
+  /**
+   * It's a task that computes the rows {@code [fromRow, toRow)} of the matrix, where a row is a pair of a piece and
+   * its side.
+   */
+  private static class TileTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final transient EdgeScorer scorer;
+    private final boolean allSidePairs;
+    private final int candidatesCount;
+    private final transient BooleanSupplier cancelled;
+    private final transient LongAdder comparisonsCount;
+    private final double[] scores;
+    private final int fromRow;
+    private final int toRow;
+
+    TileTask(EdgeScorer scorer, boolean allSidePairs, int candidatesCount, BooleanSupplier cancelled,
+             LongAdder comparisonsCount, double[] scores, int fromRow, int toRow) {
+      this.scorer = scorer;
+      this.allSidePairs = allSidePairs;
+      this.candidatesCount = candidatesCount;
+      this.cancelled = cancelled;
+      this.comparisonsCount = comparisonsCount;
+      this.scores = scores;
+      this.fromRow = fromRow;
+      this.toRow = toRow;
+    }
+
+    @Override
+    protected void compute() {
+      if (toRow - fromRow <= ROWS_PER_TILE) {
+        computeRows();
+        return;
+      }
+      final var middleRow = (fromRow + toRow) >>> 1;
+      invokeAll(new TileTask(scorer, allSidePairs, candidatesCount, cancelled, comparisonsCount, scores, fromRow,
+                      middleRow),
+              new TileTask(scorer, allSidePairs, candidatesCount, cancelled, comparisonsCount, scores, middleRow,
+                      toRow));
+    }
+
+    void computeRows() {
+      final var piecesCount = scorer.getEdgeDescriptors().getPiecesCount();
+      final var columnsCount = piecesCount * (allSidePairs ? CompatibilityMatrix.SIDES_COUNT : 1);
+      final var bounds = candidatesCount == 0 ? null : new double[columnsCount];
+      final var seedColumns = new int[candidatesCount];
+      final var bestColumns = new int[candidatesCount];
+      final var bestScores = new double[candidatesCount];
+      var comparisons = 0L;
+
+      for (int row = fromRow; row < toRow; row++) {
+        if (cancelled.getAsBoolean()) {
+          throw new CancellationException("Matrix build was cancelled");
+        }
+        final var piece = row / CompatibilityMatrix.SIDES_COUNT;
+        final var side = SIDES[row % CompatibilityMatrix.SIDES_COUNT];
+        final var offset = CompatibilityMatrix.rowOffset(piece, side, piecesCount, allSidePairs);
+
+        if (bounds == null) {
+          for (int column = 0; column < columnsCount; column++) {
+            scores[offset + column] = scorer.score(piece, side, otherPiece(column), otherSide(side, column));
+          }
+          comparisons += columnsCount;
+        }
+        else {
+          comparisons += computePrunedRow(piece, side, offset, bounds, seedColumns, bestColumns, bestScores);
+        }
+      }
+      comparisonsCount.add(comparisons);
+    }
+
+    /**
+     * Bounds the whole row first, computes the scores of the columns with the best bounds and then only of the
+     * columns whose bound reaches the worst of the best scores found so far. Bounds are compared as mean squares, so
+     * the skipped columns cost no square root, they're set to {@link Double#NEGATIVE_INFINITY}. Columns of the piece
+     * itself aren't candidates, they're always computed.
+     *
+     * @return count of computed scores
+     */
+    private int computePrunedRow(int piece, Direction side, int offset, double[] bounds, int[] seedColumns,
+                                 int[] bestColumns, double[] bestScores) {
+      final var edgeDescriptors = scorer.getEdgeDescriptors();
+      var seedCount = 0;
+      for (int column = 0; column < bounds.length; column++) {
+        final var otherPiece = otherPiece(column);
+        bounds[column] = EdgeDissimilarity.calculateMeanSquareBound(edgeDescriptors, piece, side, otherPiece,
+                otherSide(side, column));
+        if (otherPiece != piece) {
+          seedCount = insert(seedColumns, bestScores, seedCount, column, -bounds[column]);
+        }
+      }
+
+      var bestCount = 0;
+      for (int i = 0; i < seedCount; i++) {
+        final var column = seedColumns[i];
+        final var score = scorer.score(piece, side, otherPiece(column), otherSide(side, column));
+        scores[offset + column] = score;
+        bestCount = insert(bestColumns, bestScores, bestCount, column, score);
+      }
+      var comparisons = seedCount;
+      var meanSquareLimit = bestCount < candidatesCount ? Double.POSITIVE_INFINITY :
+              EdgeDissimilarity.toMeanSquare(bestScores[bestCount - 1]);
+
+      for (int column = 0; column < bounds.length; column++) {
+        if (contains(seedColumns, seedCount, column)) {
+          continue;
+        }
+        final var isOwnPiece = otherPiece(column) == piece;
+        if (!isOwnPiece && bounds[column] > meanSquareLimit) {
+          scores[offset + column] = Double.NEGATIVE_INFINITY;
+          continue;
+        }
+        final var score = scorer.score(piece, side, otherPiece(column), otherSide(side, column));
+        scores[offset + column] = score;
+        comparisons++;
+        if (!isOwnPiece) {
+          bestCount = insert(bestColumns, bestScores, bestCount, column, score);
+          meanSquareLimit = bestCount < candidatesCount ? Double.POSITIVE_INFINITY :
+                  EdgeDissimilarity.toMeanSquare(bestScores[bestCount - 1]);
+        }
+      }
+      return comparisons;
+    }
+
+    /**
+     * Keeps the columns sorted by the score descending and drops the worst one when all places are taken.
+     *
+     * @return new count of kept columns
+     */
+    private int insert(int[] bestColumns, double[] bestScores, int bestCount, int column, double score) {
+      if (bestCount == candidatesCount && score <= bestScores[bestCount - 1]) {
+        return bestCount;
+      }
+      var position = Math.min(bestCount, candidatesCount - 1);
+      while (position > 0 && bestScores[position - 1] < score) {
+        bestColumns[position] = bestColumns[position - 1];
+        bestScores[position] = bestScores[position - 1];
+        position--;
+      }
+      bestColumns[position] = column;
+      bestScores[position] = score;
+      return Math.min(bestCount + 1, candidatesCount);
+    }
+
+    private boolean contains(int[] columns, int count, int column) {
+      for (int i = 0; i < count; i++) {
+        if (columns[i] == column) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private int otherPiece(int column) {
+      return allSidePairs ? column / CompatibilityMatrix.SIDES_COUNT : column;
+    }
+
+    private Direction otherSide(Direction side, int column) {
+      return allSidePairs ? SIDES[column % CompatibilityMatrix.SIDES_COUNT] : side.opposite();
+    }
+  }
+}
@@ -0,0 +1,335 @@
+package com.task.testtask.solver;
+
+import com.task.testtask.components.Puzzle;
+import com.task.testtask.enums.Direction;
+import com.task.testtask.interfaces.PixelSource;
+import com.task.testtask.utils.ColorSimilarityUtils;
+import javafx.scene.paint.Color;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static com.task.testtask.utils.PixelUtils.blue;
+import static com.task.testtask.utils.PixelUtils.green;
+import static com.task.testtask.utils.PixelUtils.red;
+
+/**
+ * It's a per-solve cache of the border strips of every puzzle.
+ * <p>Each puzzle image is read exactly once, and every side is reduced to a compact primitive descriptor, so the
+ * similarity checks never touch the images again.</p>
+ */
+public class EdgeDescriptors {
+  private static final int SIDES_COUNT = Direction.values().length;
+  private static final int CHANNELS_COUNT = 3;
+
+  private final int piecesCount;
+  private final int borderThickness;
+  private final int width;
+  private final int height;
+
+  /**
+   * Mean colors of the border strips, laid out as {@code [piece][side][red, green, blue]}.
+   */
+  private final double[] meanColors;
+
+  /**
+   * Mean colors converted to the Lab color space once, laid out the same way as {@link #meanColors}.
+   */
+  private final double[] meanLabColors;
+
+  /**
+   * Outermost pixel lines of every side and the lines right next to them, laid out as
+   * {@code [piece][side][red..., green..., blue...]}. Channels are planar and go along the side clockwise, so a
+   * rotation of the puzzle only changes which side is looked up. Reversed copies go counterclockwise: two touching
+   * sides are compared as the clockwise line of one against the counterclockwise line of the other, which keeps the
+   * comparison a plain forward loop over primitive arrays.
+   */
+  private final float[] edgeLines;
+  private final float[] innerLines;
+  private final float[] reversedEdgeLines;
+  private final float[] reversedInnerLines;
+  private final int lineStride;
+
+  /**
+   * Means of the outermost lines and of the lines predicted over the side from the last two ones, laid out the same
+   * way as {@link #meanColors}. The reversed lines have the same means.
+   */
+  private final double[] edgeLineMeans;
+  private final double[] predictedLineMeans;
+
+  /**
+   * @param piecesCount count of puzzles
+   * @param width width of each puzzle
+   * @param height height of each puzzle
+   * @param borderThickness thickness of the strip used for the mean color
+   * @param pixelSource source of the pixels, each puzzle is read exactly once
+   */
+  public EdgeDescriptors(int piecesCount, int width, int height, int borderThickness, PixelSource pixelSource) {
+    this(piecesCount, width, height, borderThickness);
+
+    int[] pixels = null;
+    for (int i = 0; i < piecesCount; i++) {
+      pixels = pixelSource.readPixels(i, pixels);
+      extract(i, pixels);
+    }
+    deriveCopies();
+  }
+
+  private EdgeDescriptors(int piecesCount, int width, int height, int borderThickness) {
+    this.piecesCount = piecesCount;
+    this.borderThickness = borderThickness;
+    this.width = width;
+    this.height = height;
+    this.meanColors = new double[piecesCount * SIDES_COUNT * CHANNELS_COUNT];
+    this.meanLabColors = new double[meanColors.length];
+    this.lineStride = CHANNELS_COUNT * Math.max(width, height);
+    this.edgeLines = new float[piecesCount * SIDES_COUNT * lineStride];
+    this.innerLines = new float[piecesCount * SIDES_COUNT * lineStride];
+    this.reversedEdgeLines = new float[piecesCount * SIDES_COUNT * lineStride];
+    this.reversedInnerLines = new float[piecesCount * SIDES_COUNT * lineStride];
+    this.edgeLineMeans = new double[meanColors.length];
+    this.predictedLineMeans = new double[meanColors.length];
+  }
+
+  /**
+   * Reads descriptors written by {@link #writeTo(ByteBuffer)}, the buffer is left right after them.
+   */
+  public static EdgeDescriptors readFrom(ByteBuffer buffer) {
+    final var edgeDescriptors = new EdgeDescriptors(buffer.getInt(), buffer.getInt(), buffer.getInt(),
+            buffer.getInt());
+    buffer.asDoubleBuffer().get(edgeDescriptors.meanColors);
+    buffer.position(buffer.position() + edgeDescriptors.meanColors.length * Double.BYTES);
+    buffer.asFloatBuffer().get(edgeDescriptors.edgeLines);
+    buffer.position(buffer.position() + edgeDescriptors.edgeLines.length * Float.BYTES);
+    buffer.asFloatBuffer().get(edgeDescriptors.innerLines);
+    buffer.position(buffer.position() + edgeDescriptors.innerLines.length * Float.BYTES);
+    edgeDescriptors.deriveCopies();
+    return edgeDescriptors;
+  }
+
+  /**
+   * Writes the descriptors in the byte order of the buffer. Reversed lines, means of the lines and Lab colors aren't
+   * written, they're derived again on reading.
+   */
+  public void writeTo(ByteBuffer buffer) {
+    buffer.putInt(piecesCount).putInt(width).putInt(height).putInt(borderThickness);
+    buffer.asDoubleBuffer().put(meanColors);
+    buffer.position(buffer.position() + meanColors.length * Double.BYTES);
+    buffer.asFloatBuffer().put(edgeLines);
+    buffer.position(buffer.position() + edgeLines.length * Float.BYTES);
+    buffer.asFloatBuffer().put(innerLines);
+    buffer.position(buffer.position() + innerLines.length * Float.BYTES);
+  }
+
+  /**
+   * @return count of bytes written by {@link #writeTo(ByteBuffer)}
+   */
+  public long getSerializedSize() {
+    return 4L * Integer.BYTES + (long) meanColors.length * Double.BYTES
+            + 2L * edgeLines.length * Float.BYTES;
+  }
+
+  public static EdgeDescriptors fromPuzzles(List<Puzzle> puzzles, int borderThickness) {
+    final var firstTile = puzzles.get(0).getTile();
+    return new EdgeDescriptors(puzzles.size(), firstTile.width(), firstTile.height(), borderThickness,
+            (index, buffer) -> puzzles.get(index).getTile().readPixels(buffer));
+  }
+
+  public int getPiecesCount() {
+    return piecesCount;
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  public int getBorderThickness() {
+    return borderThickness;
+  }
+
+  public boolean hasSquarePuzzles() {
+    return width == height;
+  }
+
+  public double getRed(int piece, Direction side) {
+    return meanColors[offset(piece, side)];
+  }
+
+  public double getGreen(int piece, Direction side) {
+    return meanColors[offset(piece, side) + 1];
+  }
+
+  public double getBlue(int piece, Direction side) {
+    return meanColors[offset(piece, side) + 2];
+  }
+
+  /**
+   * @return count of pixels in the line of the side
+   */
+  public int getLineLength(Direction side) {
+    return side == Direction.TOP || side == Direction.BOTTOM ? width : height;
+  }
+
+  /**
+   * @return index of the first red value of the side line in {@link #getEdgeLines()} and {@link #getInnerLines()}
+   */
+  public int getLineOffset(int piece, Direction side) {
+    return (piece * SIDES_COUNT + side.ordinal()) * lineStride;
+  }
+
+  /**
+   * @return index of the first channel of the side in {@link #getMeanLabColors()}
+   */
+  int getMeanColorOffset(int piece, Direction side) {
+    return offset(piece, side);
+  }
+
+  double[] getMeanLabColors() {
+    return meanLabColors;
+  }
+
+  float[] getEdgeLines() {
+    return edgeLines;
+  }
+
+  float[] getInnerLines() {
+    return innerLines;
+  }
+
+  float[] getReversedEdgeLines() {
+    return reversedEdgeLines;
+  }
+
+  float[] getReversedInnerLines() {
+    return reversedInnerLines;
+  }
+
+  /**
+   * @return means of the outermost lines, the first channel of the side is at {@link #getMeanColorOffset}
+   */
+  double[] getEdgeLineMeans() {
+    return edgeLineMeans;
+  }
+
+  /**
+   * @return means of the lines that continue the gradient of the outermost two lines over the side
+   */
+  double[] getPredictedLineMeans() {
+    return predictedLineMeans;
+  }
+
+  public Color getMeanColor(int piece, Direction side) {
+    final var offset = offset(piece, side);
+    return new Color(meanColors[offset], meanColors[offset + 1], meanColors[offset + 2], 1);
+  }
+
+  private void extract(int piece, int[] pixels) {
+    for (var side : Direction.values()) {
+      extractSide(piece, side, pixels, bordersOf(side));
+      extractLines(piece, side, pixels);
+    }
+  }
+
+  private void extractLines(int piece, Direction side, int[] pixels) {
+    final var length = getLineLength(side);
+    final var offset = getLineOffset(piece, side);
+
+    for (int i = 0; i < length; i++) {
+      putPixel(edgeLines, offset, length, i, pixels[pixelIndex(side, i, 0)]);
+      putPixel(innerLines, offset, length, i, pixels[pixelIndex(side, i, 1)]);
+    }
+  }
+
+  /**
+   * Fills the reversed lines, the means of the lines and the Lab colors, they're copies of the extracted data in
+   * another form.
+   */
+  private void deriveCopies() {
+    for (int piece = 0; piece < piecesCount; piece++) {
+      for (var side : Direction.values()) {
+        final var length = getLineLength(side);
+        final var offset = getLineOffset(piece, side);
+        for (int channel = 0; channel < CHANNELS_COUNT; channel++) {
+          final var channelOffset = offset + channel * length;
+          double edgeSum = 0;
+          double innerSum = 0;
+          for (int i = 0; i < length; i++) {
+            reversedEdgeLines[channelOffset + length - 1 - i] = edgeLines[channelOffset + i];
+            reversedInnerLines[channelOffset + length - 1 - i] = innerLines[channelOffset + i];
+            edgeSum += edgeLines[channelOffset + i];
+            innerSum += innerLines[channelOffset + i];
+          }
+          edgeLineMeans[offset(piece, side) + channel] = edgeSum / length;
+          predictedLineMeans[offset(piece, side) + channel] = (2 * edgeSum - innerSum) / length;
+        }
+      }
+    }
+    ColorSimilarityUtils.toLABColors(meanColors, meanLabColors, piecesCount * SIDES_COUNT);
+  }
+
+  private void putPixel(float[] lines, int offset, int length, int position, int argb) {
+    lines[offset + position] = red(argb);
+    lines[offset + length + position] = green(argb);
+    lines[offset + 2 * length + position] = blue(argb);
+  }
+
+  /**
+   * @param position position of the pixel along the side going clockwise
+   * @param depth distance of the pixel from the side towards the center of the puzzle
+   * @return index of the pixel in the row-major pixels of the puzzle
+   */
+  private int pixelIndex(Direction side, int position, int depth) {
+    return switch (side) {
+      case LEFT -> (height - 1 - position) * width + depth;
+      case RIGHT -> position * width + width - 1 - depth;
+      case TOP -> depth * width + position;
+      case BOTTOM -> (height - 1 - depth) * width + width - 1 - position;
+    };
+  }
+
+  /**
+   * Sums up the strip and stores its mean color. The sum is divided by the whole puzzle area, the same way the
+   * similarity check always did, so the {@code ACCURACY_FACTOR} keeps its meaning.
+   *
+   * @param pixels ARGB pixels of the whole puzzle
+   * @param borders it's an array that defines the strip: int[] {xStartBorder, xEndBorder, yStartBorder, yEndBorder}
+   */
+  private void extractSide(int piece, Direction side, int[] pixels, int[] borders) {
+    long redSum = 0;
+    long greenSum = 0;
+    long blueSum = 0;
+
+    for (int y = borders[2]; y < borders[3]; y++) {
+      final var rowOffset = y * width;
+      for (int x = borders[0]; x < borders[1]; x++) {
+        final var argb = pixels[rowOffset + x];
+        redSum += red(argb);
+        greenSum += green(argb);
+        blueSum += blue(argb);
+      }
+    }
+
+    final var area = 255.0 * height * width;
+    final var offset = offset(piece, side);
+    meanColors[offset] = redSum / area;
+    meanColors[offset + 1] = greenSum / area;
+    meanColors[offset + 2] = blueSum / area;
+  }
+
+  private int[] bordersOf(Direction side) {
+    return switch (side) {
+      case LEFT -> new int[] {0, borderThickness, 0, height};
+      case RIGHT -> new int[] {width - borderThickness, width, 0, height};
+      case TOP -> new int[] {0, width, 0, borderThickness};
+      case BOTTOM -> new int[] {0, width, height - borderThickness, height};
+    };
+  }
+
+  private int offset(int piece, Direction side) {
+    return (piece * SIDES_COUNT + side.ordinal()) * CHANNELS_COUNT;
+  }
+}
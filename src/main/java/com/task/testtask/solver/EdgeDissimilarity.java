@@ -0,0 +1,123 @@
+package com.task.testtask.solver;
+
+import com.task.testtask.enums.Direction;
+import com.task.testtask.enums.ScoreMetric;
+
+/**
+ * It's a per-pixel dissimilarity kernel for two adjacent sides.
+ * <p>Dissimilarity is a sum of squared differences of the touching lines plus a gradient prediction term: each side
+ * extrapolates its last two lines over the seam and the error of that prediction against the other side is added.
+ * That makes the metric tell apart edges that have the same mean color but different content.</p>
+ * <p>Channels are stored planar in float arrays, so the inner loop has no branches, no conversions and no object
+ * access. The work still grows with the length of the sides instead of being constant per pair as for
+ * {@link ScoreMetric#MEAN_COLOR}, so the full pass is skipped where possible: {@link #calculateMeanSquareBound}
+ * bounds the similarity from the means of the lines in constant time, and a pair whose bound can't reach the best
+ * candidates of the side is never compared pixel by pixel.</p>
+ */
+public class EdgeDissimilarity {
+  private static final float GRADIENT_WEIGHT = 0.5f;
+  private static final int CHANNELS_COUNT = 3;
+  private static final double MAX_CHANNEL_VALUE = 255.0;
+
+  /**
+   * The bound is computed in doubles and the dissimilarity is summed up in floats, the bound is lowered a bit so the
+   * rounding of the sums never puts it below the similarity.
+   */
+  private static final double BOUND_SLACK = 0.999;
+
+  private EdgeDissimilarity() {
+
+  }
+
+  /**
+   * Compares the side of the piece with the side of the other piece as if they were touching each other.
+   *
+   * @return similarity percentage in the same range as the mean color similarity, 100 means identical pixels
+   */
+  public static double calculateSimilarity(EdgeDescriptors descriptors, int piece, Direction side,
+                                           int otherPiece, Direction otherSide) {
+    final var length = descriptors.getLineLength(side);
+    final var dissimilarity = calculateDissimilarity(
+            descriptors.getEdgeLines(), descriptors.getInnerLines(), descriptors.getLineOffset(piece, side),
+            descriptors.getReversedEdgeLines(), descriptors.getReversedInnerLines(),
+            descriptors.getLineOffset(otherPiece, otherSide),
+            CHANNELS_COUNT * length);
+
+    return toSimilarity(dissimilarity / (CHANNELS_COUNT * length * (1 + GRADIENT_WEIGHT)));
+  }
+
+  /**
+   * Gives the lower bound of the mean square that {@link #calculateSimilarity} is made of, from the means of the lines
+   * only. Every term of the dissimilarity is a sum of squares of values that are linear in the lines, and such a sum
+   * is never less than the count of the values multiplied by the square of their mean. The prediction errors of the
+   * sides are the predicted line of one side minus the outermost line of the other one.
+   *
+   * @return value that {@link #toSimilarity(double)} turns into a percentage not less than the similarity of the sides
+   */
+  public static double calculateMeanSquareBound(EdgeDescriptors descriptors, int piece, Direction side,
+                                                int otherPiece, Direction otherSide) {
+    final var edgeMeans = descriptors.getEdgeLineMeans();
+    final var predictedMeans = descriptors.getPredictedLineMeans();
+    final var first = descriptors.getMeanColorOffset(piece, side);
+    final var second = descriptors.getMeanColorOffset(otherPiece, otherSide);
+    double differenceSum = 0;
+    double predictionSum = 0;
+
+    for (int channel = 0; channel < CHANNELS_COUNT; channel++) {
+      final var firstEdge = edgeMeans[first + channel];
+      final var secondEdge = edgeMeans[second + channel];
+      final var difference = firstEdge - secondEdge;
+      final var firstPredictionError = predictedMeans[first + channel] - secondEdge;
+      final var secondPredictionError = predictedMeans[second + channel] - firstEdge;
+
+      differenceSum += difference * difference;
+      predictionSum += firstPredictionError * firstPredictionError + secondPredictionError * secondPredictionError;
+    }
+    final var dissimilarity = differenceSum + GRADIENT_WEIGHT * predictionSum / 2;
+    return BOUND_SLACK * dissimilarity / (CHANNELS_COUNT * (1 + GRADIENT_WEIGHT));
+  }
+
+  /**
+   * @param meanSquare weighted mean square of the differences per channel value
+   * @return similarity percentage, 100 means identical pixels
+   */
+  public static double toSimilarity(double meanSquare) {
+    return (1.0 - Math.sqrt(meanSquare) / MAX_CHANNEL_VALUE) * 100.0;
+  }
+
+  /**
+   * @return mean square that {@link #toSimilarity(double)} turns into the similarity, it's the inverse function
+   */
+  public static double toMeanSquare(double similarity) {
+    final var rootMeanSquare = (1.0 - similarity / 100.0) * MAX_CHANNEL_VALUE;
+    return rootMeanSquare * rootMeanSquare;
+  }
+
+  /**
+   * @param edges outermost lines of the first side
+   * @param inner lines next to the outermost ones of the first side
+   * @param first offset of the first side
+   * @param otherEdges outermost lines of the second side going in the same direction as the first ones
+   * @param otherInner lines next to the outermost ones of the second side
+   * @param second offset of the second side
+   * @param count count of values to compare, it's the length of the side multiplied by the count of channels
+   * @return sum of squared differences plus weighted squared prediction errors of both sides
+   */
+  static double calculateDissimilarity(float[] edges, float[] inner, int first,
+                                       float[] otherEdges, float[] otherInner, int second, int count) {
+    float differenceSum = 0;
+    float predictionSum = 0;
+
+    for (int i = 0; i < count; i++) {
+      final var firstEdge = edges[first + i];
+      final var secondEdge = otherEdges[second + i];
+      final var difference = firstEdge - secondEdge;
+      final var firstPredictionError = difference + firstEdge - inner[first + i];
+      final var secondPredictionError = secondEdge - otherInner[second + i] - difference;
+
+      differenceSum += difference * difference;
+      predictionSum += firstPredictionError * firstPredictionError + secondPredictionError * secondPredictionError;
+    }
+    return differenceSum + GRADIENT_WEIGHT * predictionSum / 2;
+  }
+}
@@ -0,0 +1,35 @@
+package com.task.testtask.solver;
+
+import com.task.testtask.enums.Direction;
+import com.task.testtask.enums.ScoreMetric;
+
+import static com.task.testtask.utils.ColorSimilarityUtils.labSimilarity;
+
+/**
+ * It's a scorer that compares two sides of puzzles from the cached edge descriptors with the chosen metric.
+ */
+public class EdgeScorer {
+  private final EdgeDescriptors edgeDescriptors;
+  private final ScoreMetric metric;
+
+  public EdgeScorer(EdgeDescriptors edgeDescriptors, ScoreMetric metric) {
+    this.edgeDescriptors = edgeDescriptors;
+    this.metric = metric;
+  }
+
+  public EdgeDescriptors getEdgeDescriptors() {
+    return edgeDescriptors;
+  }
+
+  /**
+   * @return similarity percentage between the side of the piece and the side of the other piece when they touch
+   */
+  public double score(int piece, Direction side, int otherPiece, Direction otherSide) {
+    if (metric == ScoreMetric.PIXEL_DISSIMILARITY) {
+      return EdgeDissimilarity.calculateSimilarity(edgeDescriptors, piece, side, otherPiece, otherSide);
+    }
+    final var meanLabColors = edgeDescriptors.getMeanLabColors();
+    return labSimilarity(meanLabColors, edgeDescriptors.getMeanColorOffset(piece, side),
+            meanLabColors, edgeDescriptors.getMeanColorOffset(otherPiece, otherSide));
+  }
+}
@@ -0,0 +1,386 @@
+package com.task.testtask.solver;
+
+import com.task.testtask.enums.Direction;
+import com.task.testtask.utils.ColorSimilarityUtils;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+/**
+ * It's an index over the edge descriptors that finds the best neighbour candidates of every side without comparing
+ * every side with every other one.
+ * <p>Every side is reduced to a short feature vector: its line is split into a few segments, and the mean color of
+ * each segment is converted to Lab. Vectors are kept in k-d trees, so the nearest sides are found in sub-linear time.
+ * The nearest sides are then rescored with the exact metric and only the {@code k} best of them are kept in the
+ * {@link CandidateGraph}, so memory stays proportional to {@code N * k}.</p>
+ */
+public class NeighbourIndex {
+  private static final int SEGMENTS_COUNT = 4;
+  private static final int CHANNELS_COUNT = 3;
+  private static final int FEATURES_COUNT = SEGMENTS_COUNT * CHANNELS_COUNT;
+  private static final int OVERFETCH_FACTOR = 3;
+  private static final int SIDES_COUNT = Direction.values().length;
+
+  private final EdgeScorer scorer;
+  private final EdgeDescriptors edgeDescriptors;
+  private final boolean rotationAware;
+
+  /**
+   * Features of the lines going clockwise, laid out as {@code [piece][side][feature]}.
+   */
+  private final float[] features;
+
+  /**
+   * Features of the lines going counterclockwise, that's how a side looks from the side that touches it.
+   */
+  private final float[] reversedFeatures;
+
+  /**
+   * Trees of sides that can touch the side of the index, when puzzles can be rotated there's a single tree of all
+   * sides.
+   */
+  private final KdTree[] trees;
+
+  private final LongAdder comparisonsCount = new LongAdder();
+
+  public NeighbourIndex(EdgeScorer scorer, boolean rotationAware) {
+    if (rotationAware && !scorer.getEdgeDescriptors().hasSquarePuzzles()) {
+      throw new IllegalArgumentException("Only square puzzles can be rotated");
+    }
+    this.scorer = scorer;
+    this.edgeDescriptors = scorer.getEdgeDescriptors();
+    this.rotationAware = rotationAware;
+
+    final var piecesCount = edgeDescriptors.getPiecesCount();
+    features = new float[piecesCount * SIDES_COUNT * FEATURES_COUNT];
+    reversedFeatures = new float[piecesCount * SIDES_COUNT * FEATURES_COUNT];
+    final var lab = new double[CHANNELS_COUNT];
+    for (int piece = 0; piece < piecesCount; piece++) {
+      for (var side : Direction.values()) {
+        extractFeatures(edgeDescriptors.getEdgeLines(), features, piece, side, lab);
+        extractFeatures(edgeDescriptors.getReversedEdgeLines(), reversedFeatures, piece, side, lab);
+      }
+    }
+
+    if (rotationAware) {
+      trees = new KdTree[] {new KdTree(reversedFeatures, IntStream.range(0, piecesCount * SIDES_COUNT).toArray())};
+    }
+    else {
+      trees = new KdTree[SIDES_COUNT];
+      for (var side : Direction.values()) {
+        final var points = IntStream.range(0, piecesCount).map(piece -> point(piece, side)).toArray();
+        trees[side.ordinal()] = new KdTree(reversedFeatures, points);
+      }
+    }
+  }
+
+  /**
+   * Finds the {@code k} best candidates for every side of every puzzle state.
+   *
+   * @param parallelism count of threads used to query the index
+   */
+  public CandidateGraph buildCandidateGraph(int k, int parallelism) {
+    return buildCandidateGraph(k, parallelism, () -> false);
+  }
+
+  /**
+   * Finds the {@code k} best candidates like {@link #buildCandidateGraph(int, int)} and checks the flag before every
+   * query.
+   *
+   * @param cancelled returns true when the queries must stop, then {@link CancellationException} is thrown
+   */
+  public CandidateGraph buildCandidateGraph(int k, int parallelism, BooleanSupplier cancelled) {
+    final var piecesCount = edgeDescriptors.getPiecesCount();
+    final var orientationsCount = rotationAware ? SIDES_COUNT : 1;
+    final var graph = new CandidateGraph(piecesCount, orientationsCount,
+            Math.min(k, (piecesCount - 1) * orientationsCount));
+    final var pool = new ForkJoinPool(parallelism);
+    try {
+      pool.submit(() -> IntStream.range(0, piecesCount * SIDES_COUNT).parallel()
+              .forEach(point -> {
+                if (cancelled.getAsBoolean()) {
+                  throw new CancellationException("Index queries were cancelled");
+                }
+                findCandidates(graph, point / SIDES_COUNT, Direction.values()[point % SIDES_COUNT], k);
+              })).join();
+    } finally {
+      pool.shutdown();
+    }
+    return graph;
+  }
+
+  /**
+   * @return count of side pairs scored with the exact metric so far
+   */
+  public long getComparisonsCount() {
+    return comparisonsCount.sum();
+  }
+
+  /**
+   * Finds candidates for the original side of the piece and writes them to every state where that side is shown.
+   * The score of a pair of original sides doesn't depend on how both pieces are turned, so every found side is scored
+   * once and offered to all orientations.
+   */
+  private void findCandidates(CandidateGraph graph, int piece, Direction originalSide, int k) {
+    final var tree = rotationAware ? trees[0] : trees[originalSide.opposite().ordinal()];
+    final var nearest = tree.findNearest(features, point(piece, originalSide) * FEATURES_COUNT,
+            (k + 1) * OVERFETCH_FACTOR);
+
+    var comparisons = 0;
+    for (var point : nearest) {
+      final var otherPiece = point / SIDES_COUNT;
+      final var otherSide = Direction.values()[point % SIDES_COUNT];
+      if (otherPiece == piece) {
+        continue;
+      }
+      final var score = scorer.score(piece, originalSide, otherPiece, otherSide);
+      comparisons++;
+
+      for (int quarterTurns = 0; quarterTurns < graph.getOrientationsCount(); quarterTurns++) {
+        final var shownSide = originalSide.rotateClockwise(quarterTurns);
+        final var otherTurns = turnsToShow(otherSide, shownSide.opposite());
+        graph.offer(graph.stateOf(piece, quarterTurns), shownSide, graph.stateOf(otherPiece, otherTurns), score);
+      }
+    }
+    comparisonsCount.add(comparisons);
+  }
+
+  /**
+   * @return count of clockwise quarter turns that puts the original side to the shown one
+   */
+  private static int turnsToShow(Direction originalSide, Direction shownSide) {
+    for (int turns = 0; turns < SIDES_COUNT; turns++) {
+      if (originalSide.rotateClockwise(turns) == shownSide) {
+        return turns;
+      }
+    }
+    throw new IllegalStateException("Unreachable side: " + shownSide);
+  }
+
+  private void extractFeatures(float[] lines, float[] target, int piece, Direction side, double[] lab) {
+    final var length = edgeDescriptors.getLineLength(side);
+    final var offset = edgeDescriptors.getLineOffset(piece, side);
+    final var featuresOffset = point(piece, side) * FEATURES_COUNT;
+    final var means = new double[CHANNELS_COUNT];
+
+    for (int segment = 0; segment < SEGMENTS_COUNT; segment++) {
+      final var from = segment * length / SEGMENTS_COUNT;
+      final var to = Math.max(from + 1, (segment + 1) * length / SEGMENTS_COUNT);
+      for (int channel = 0; channel < CHANNELS_COUNT; channel++) {
+        var sum = 0.0;
+        for (int i = from; i < to; i++) {
+          sum += lines[offset + channel * length + i];
+        }
+        means[channel] = sum / (to - from) / 255.0;
+      }
+      ColorSimilarityUtils.toLABColor(means[0], means[1], means[2], lab);
+      for (int channel = 0; channel < CHANNELS_COUNT; channel++) {
+        target[featuresOffset + segment * CHANNELS_COUNT + channel] = (float) lab[channel];
+      }
+    }
+  }
+
+  private static int point(int piece, Direction side) {
+    return piece * SIDES_COUNT + side.ordinal();
+  }
+
+  /**
+   * It's a static k-d tree laid out in a single array: the middle of every range is the node and both halves are its
+   * subtrees. Every node splits by the dimension with the largest spread.
+   */
+  private static class KdTree {
+    private final float[] features;
+    private final int[] points;
+    private final byte[] splitDimensions;
+
+    KdTree(float[] features, int[] points) {
+      this.features = features;
+      this.points = points;
+      this.splitDimensions = new byte[points.length];
+      build(0, points.length);
+    }
+
+    private void build(int from, int to) {
+      if (to - from <= 1) {
+        return;
+      }
+      final var dimension = findWidestDimension(from, to);
+      final var middle = (from + to) >>> 1;
+      select(from, to - 1, middle, dimension);
+      splitDimensions[middle] = (byte) dimension;
+      build(from, middle);
+      build(middle + 1, to);
+    }
+
+    private int findWidestDimension(int from, int to) {
+      var widestDimension = 0;
+      var widestSpread = -1f;
+      for (int dimension = 0; dimension < FEATURES_COUNT; dimension++) {
+        var min = Float.MAX_VALUE;
+        var max = -Float.MAX_VALUE;
+        for (int i = from; i < to; i++) {
+          final var value = value(points[i], dimension);
+          min = Math.min(min, value);
+          max = Math.max(max, value);
+        }
+        if (max - min > widestSpread) {
+          widestSpread = max - min;
+          widestDimension = dimension;
+        }
+      }
+      return widestDimension;
+    }
+
+    /**
+     * Quickselect that puts the k-th smallest point by the dimension to its place.
+     */
+    private void select(int left, int right, int k, int dimension) {
+      while (left < right) {
+        final var pivot = value(points[(left + right) >>> 1], dimension);
+        var i = left;
+        var j = right;
+        while (i <= j) {
+          while (value(points[i], dimension) < pivot) {
+            i++;
+          }
+          while (value(points[j], dimension) > pivot) {
+            j--;
+          }
+          if (i <= j) {
+            final var point = points[i];
+            points[i] = points[j];
+            points[j] = point;
+            i++;
+            j--;
+          }
+        }
+        if (k <= j) {
+          right = j;
+        }
+        else if (k >= i) {
+          left = i;
+        }
+        else {
+          return;
+        }
+      }
+    }
+
+    /**
+     * @return up to {@code count} points nearest to the query, the nearest first
+     */
+    int[] findNearest(float[] queryFeatures, int queryOffset, int count) {
+      final var heap = new NearestHeap(Math.min(count, points.length));
+      search(0, points.length, queryFeatures, queryOffset, heap);
+      return heap.toSortedArray();
+    }
+
+    private void search(int from, int to, float[] query, int queryOffset, NearestHeap heap) {
+      if (from >= to) {
+        return;
+      }
+      final var middle = (from + to) >>> 1;
+      final var point = points[middle];
+      heap.offer(point, distance(point, query, queryOffset));
+      if (to - from == 1) {
+        return;
+      }
+
+      final var dimension = splitDimensions[middle];
+      final var difference = query[queryOffset + dimension] - value(point, dimension);
+      final var goesLeft = difference < 0;
+      search(goesLeft ? from : middle + 1, goesLeft ? middle : to, query, queryOffset, heap);
+      if (!heap.isFull() || difference * difference < heap.worstDistance()) {
+        search(goesLeft ? middle + 1 : from, goesLeft ? to : middle, query, queryOffset, heap);
+      }
+    }
+
+    private float distance(int point, float[] query, int queryOffset) {
+      var sum = 0f;
+      final var offset = point * FEATURES_COUNT;
+      for (int i = 0; i < FEATURES_COUNT; i++) {
+        final var difference = query[queryOffset + i] - features[offset + i];
+        sum += difference * difference;
+      }
+      return sum;
+    }
+
+    private float value(int point, int dimension) {
+      return features[point * FEATURES_COUNT + dimension];
+    }
+  }
+
+  /**
+   * It's a bounded max-heap of the nearest points found so far.
+   */
+  private static class NearestHeap {
+    private final int[] points;
+    private final float[] distances;
+    private int size;
+
+    NearestHeap(int capacity) {
+      points = new int[capacity];
+      distances = new float[capacity];
+    }
+
+    boolean isFull() {
+      return size == points.length;
+    }
+
+    float worstDistance() {
+      return distances[0];
+    }
+
+    void offer(int point, float distance) {
+      if (points.length == 0) {
+        return;
+      }
+      if (!isFull()) {
+        var i = size++;
+        while (i > 0 && distances[(i - 1) / 2] < distance) {
+          points[i] = points[(i - 1) / 2];
+          distances[i] = distances[(i - 1) / 2];
+          i = (i - 1) / 2;
+        }
+        points[i] = point;
+        distances[i] = distance;
+      }
+      else if (distance < distances[0]) {
+        siftDown(point, distance, size);
+      }
+    }
+
+    private void siftDown(int point, float distance, int heapSize) {
+      var i = 0;
+      while (2 * i + 1 < heapSize) {
+        var child = 2 * i + 1;
+        if (child + 1 < heapSize && distances[child + 1] > distances[child]) {
+          child++;
+        }
+        if (distances[child] <= distance) {
+          break;
+        }
+        points[i] = points[child];
+        distances[i] = distances[child];
+        i = child;
+      }
+      points[i] = point;
+      distances[i] = distance;
+    }
+
+    int[] toSortedArray() {
+      final var result = new int[size];
+      for (int i = size - 1; i >= 0; i--) {
+        result[i] = points[0];
+        final var lastPoint = points[i];
+        final var lastDistance = distances[i];
+        siftDown(lastPoint, lastDistance, i);
+      }
+      size = 0;
+      return result;
+    }
+  }
+}
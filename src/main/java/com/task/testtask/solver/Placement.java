@@ -0,0 +1,10 @@
+package com.task.testtask.solver;
+
+/**
+ * It's a puzzle placed on a particular place of the grid.
+ *
+ * @param index index of the puzzle, {@link CandidateGraph#NO_CANDIDATE} marks an empty place
+ * @param rotation clockwise rotation of the puzzle in degrees, it's one of 0, 90, 180, 270
+ */
+public record Placement(int index, int rotation) {
+}
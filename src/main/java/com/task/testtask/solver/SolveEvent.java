@@ -0,0 +1,33 @@
+package com.task.testtask.solver;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * It's a Flight Recorder event with the counters of a whole solve.
+ */
+@Name("com.task.testtask.Solve")
+@Label("Solve")
+@Category({"Puzzle", "Solver"})
+@Description("Counters of the automatic image collecting")
+class SolveEvent extends Event {
+  @Label("Pieces Count")
+  int piecesCount;
+
+  @Label("Comparisons")
+  long comparisons;
+
+  @Label("Accepted Links")
+  long acceptedLinks;
+
+  @Label("Rejected Links")
+  @Description("Links that aren't between best buddies and are under the accuracy factor")
+  long rejectedLinks;
+
+  @Label("Skipped Links")
+  @Description("Links that were good enough but merged nothing")
+  long skippedLinks;
+}
@@ -0,0 +1,116 @@
+package com.task.testtask.solver;
+
+import com.task.testtask.enums.SolverPhase;
+import com.task.testtask.interfaces.SolverListener;
+
+import java.util.function.Supplier;
+
+/**
+ * It's a set of timers and counters of a single solve.
+ * <p>Phases are timed with {@link System#nanoTime()} and reported to the {@link SolverListener} and to Flight
+ * Recorder. Counters are added in bulk, once per tile or query, so the scoring loops stay untouched.</p>
+ */
+public class SolverMetrics {
+  private final int piecesCount;
+  private final SolverListener listener;
+  private final long[] phaseNanos = new long[SolverPhase.values().length];
+
+  private long comparisons;
+  private long acceptedLinks;
+  private long rejectedLinks;
+  private long skippedLinks;
+
+  public SolverMetrics(int piecesCount, SolverListener listener) {
+    this.piecesCount = piecesCount;
+    this.listener = listener;
+  }
+
+  public <T> T measure(SolverPhase phase, Supplier<T> action) {
+    final var event = new SolverPhaseEvent();
+    event.begin();
+    final var start = System.nanoTime();
+
+    final var result = action.get();
+
+    final var duration = System.nanoTime() - start;
+    event.end();
+    if (event.shouldCommit()) {
+      event.phase = phase.name();
+      event.piecesCount = piecesCount;
+      event.commit();
+    }
+    phaseNanos[phase.ordinal()] += duration;
+    listener.onPhaseFinished(phase, duration);
+    return result;
+  }
+
+  public void measure(SolverPhase phase, Runnable action) {
+    measure(phase, () -> {
+      action.run();
+      return null;
+    });
+  }
+
+  /**
+   * Reports the counters, it's called once at the end of the solve.
+   */
+  public void finish() {
+    final var event = new SolveEvent();
+    if (event.shouldCommit()) {
+      event.piecesCount = piecesCount;
+      event.comparisons = comparisons;
+      event.acceptedLinks = acceptedLinks;
+      event.rejectedLinks = rejectedLinks;
+      event.skippedLinks = skippedLinks;
+      event.commit();
+    }
+    listener.onSolveFinished(this);
+  }
+
+  public void addComparisons(long count) {
+    comparisons += count;
+  }
+
+  void addLinks(long accepted, long rejected, long skipped) {
+    acceptedLinks += accepted;
+    rejectedLinks += rejected;
+    skippedLinks += skipped;
+  }
+
+  public int getPiecesCount() {
+    return piecesCount;
+  }
+
+  public long getPhaseNanos(SolverPhase phase) {
+    return phaseNanos[phase.ordinal()];
+  }
+
+  /**
+   * @return count of side pairs scored with the exact metric
+   */
+  public long getComparisons() {
+    return comparisons;
+  }
+
+  /**
+   * @return count of links that merged two clusters
+   */
+  public long getAcceptedLinks() {
+    return acceptedLinks;
+  }
+
+  /**
+   * @return count of links that aren't between best buddies and have score under the accuracy factor
+   */
+  public long getRejectedLinks() {
+    return rejectedLinks;
+  }
+
+  /**
+   * @return count of links that were good enough but merged nothing: both puzzles were already in one cluster, or
+   * the merge would overlap puzzles or leave the grid
+   */
+  public long getSkippedLinks() {
+    return skippedLinks;
+  }
+}
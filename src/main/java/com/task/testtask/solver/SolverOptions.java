@@ -0,0 +1,60 @@
+package com.task.testtask.solver;
+
+import com.task.testtask.enums.ScoreMetric;
+import com.task.testtask.interfaces.SolverListener;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * It's a set of options of the automatic image collecting.
+ */
+@Getter
+@Builder(toBuilder = true)
+public class SolverOptions {
+  /**
+   * Count of threads used to compute similarities between puzzles.
+   */
+  @Builder.Default
+  private final int parallelism = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * Metric used to compare sides of puzzles. The pixel dissimilarity is the default: mean colors of the sides are too
+   * alike on real images, and the sets that are solved right with it are mostly misplaced with the mean color, while
+   * the solve takes less than twice as long.
+   */
+  @Builder.Default
+  private final ScoreMetric metric = ScoreMetric.PIXEL_DISSIMILARITY;
+
+  /**
+   * Defines whether puzzles can be placed in any of four orientations. Rotation requires square puzzles.
+   */
+  private final boolean rotationAware;
+
+  /**
+   * Count of puzzle orientations up to which every side is compared with every other one, when puzzles can be rotated
+   * each puzzle counts four times. Bigger sets look candidates up in the {@link NeighbourIndex} instead of building
+   * the dense matrix.
+   */
+  @Builder.Default
+  private final int denseMatrixLimit = 1024;
+
+  /**
+   * Count of rows of the grid, 0 means the smallest square grid that fits all the puzzles.
+   */
+  private final int rowsCount;
+
+  /**
+   * Count of columns of the grid, 0 means the smallest square grid that fits all the puzzles.
+   */
+  private final int columnsCount;
+
+  /**
+   * Listener of the solver phases and counters, nothing is reported by default.
+   */
+  @Builder.Default
+  private final SolverListener listener = SolverListener.NONE;
+
+  public static SolverOptions defaults() {
+    return SolverOptions.builder().build();
+  }
+}
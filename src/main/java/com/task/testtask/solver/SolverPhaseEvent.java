@@ -0,0 +1,22 @@
+package com.task.testtask.solver;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * It's a Flight Recorder event of a single solver phase. It costs nothing unless a recording is running.
+ */
+@Name("com.task.testtask.SolverPhase")
+@Label("Solver Phase")
+@Category({"Puzzle", "Solver"})
+@Description("A phase of the automatic image collecting")
+class SolverPhaseEvent extends Event {
+  @Label("Phase")
+  String phase;
+
+  @Label("Pieces Count")
+  int piecesCount;
+}
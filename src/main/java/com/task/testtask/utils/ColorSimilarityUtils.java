@@ -2,59 +2,128 @@ package com.task.testtask.utils;
 
 import javafx.scene.paint.Color;
 
+/**
+ * It's a set of color comparisons in the Lab color space.
+ * <p>Every method works on primitives and writes into arrays given by the caller, so comparisons in the hot loops
+ * allocate nothing. The sRGB to XYZ matrix is folded together with the channel scale and the reference white into
+ * a single table, so a conversion is nine multiplications and three calls of {@link #f(double)}.</p>
+ */
 public class ColorSimilarityUtils {
+  private static final int CHANNELS_COUNT = 3;
+
+  private static final double X_REF = 95.047;
+  private static final double Y_REF = 100.000;
+  private static final double Z_REF = 108.883;
+
+  /**
+   * The sRGB to XYZ matrix, where each row is already multiplied by 255 and divided by its reference white.
+   */
+  private static final double[] RGB_TO_XYZ_RATIO = {
+          0.4124564 * 255.0 / X_REF, 0.3575761 * 255.0 / X_REF, 0.1804375 * 255.0 / X_REF,
+          0.2126729 * 255.0 / Y_REF, 0.7151522 * 255.0 / Y_REF, 0.0721750 * 255.0 / Y_REF,
+          0.0193339 * 255.0 / Z_REF, 0.1191920 * 255.0 / Z_REF, 0.9503041 * 255.0 / Z_REF
+  };
+
+  private static final double THRESHOLD = 6.0 / 29.0;
+  private static final double LINEAR_SHIFT = 4.0 / 29.0;
+  private static final double LINEAR_SLOPE = 108.0 / 841.0;
+
   private ColorSimilarityUtils() {
 
   }
 
   public static double calculateColorSimilarity(Color color1, Color color2) {
-    double[] lab1 = toLABColor(color1);
-    double[] lab2 = toLABColor(color2);
-
-    double deltaL = lab2[0] - lab1[0];
-    double deltaA = lab2[1] - lab1[1];
-    double deltaB = lab2[2] - lab1[2];
+    return similarity(color1.getRed(), color1.getGreen(), color1.getBlue(),
+            color2.getRed(), color2.getGreen(), color2.getBlue());
+  }
 
-    double deltaE = Math.sqrt(deltaL * deltaL + deltaA * deltaA + deltaB * deltaB);
+  /**
+   * Compares two colors given by their channels in the range [0, 1].
+   *
+   * @return similarity percentage, 100 for equal colors
+   */
+  public static double similarity(double red1, double green1, double blue1,
+                                  double red2, double green2, double blue2) {
+    final var fy1 = fy(red1, green1, blue1);
+    final var fy2 = fy(red2, green2, blue2);
+
+    final var deltaL = 116.0 * (fy2 - fy1);
+    final var deltaA = 500.0 * ((fx(red2, green2, blue2) - fy2) - (fx(red1, green1, blue1) - fy1));
+    final var deltaB = 200.0 * ((fy2 - fz(red2, green2, blue2)) - (fy1 - fz(red1, green1, blue1)));
+    return toSimilarity(deltaL, deltaA, deltaB);
+  }
 
-    // Calculate the color similarity as a percentage (100% - deltaE)
-    double colorSimilarity = (1.0 - deltaE) * 100.0;
+  /**
+   * Compares two colors that were already converted by {@link #toLABColors(double[], double[], int)}.
+   *
+   * @param offset1 index of L of the first color
+   * @param offset2 index of L of the second color
+   * @return similarity percentage, 100 for equal colors
+   */
+  public static double labSimilarity(double[] lab1, int offset1, double[] lab2, int offset2) {
+    return toSimilarity(lab2[offset2] - lab1[offset1],
+            lab2[offset2 + 1] - lab1[offset1 + 1],
+            lab2[offset2 + 2] - lab1[offset1 + 2]);
+  }
 
-    return colorSimilarity;
+  /**
+   * Converts many colors to the Lab color space at once.
+   *
+   * @param rgb colors packed as {@code [red, green, blue, red, green, blue, ...]} with channels in the range [0, 1]
+   * @param lab array where colors are written packed the same way as {@code [L, a, b, ...]}
+   * @param count count of colors
+   */
+  public static void toLABColors(double[] rgb, double[] lab, int count) {
+    for (int i = 0, offset = 0; i < count; i++, offset += CHANNELS_COUNT) {
+      toLABColor(rgb[offset], rgb[offset + 1], rgb[offset + 2], lab, offset);
+    }
   }
 
-  private static double[] toLABColor(Color color) {
-    double red = color.getRed() * 255.0;
-    double green = color.getGreen() * 255.0;
-    double blue = color.getBlue() * 255.0;
+  /**
+   * Converts the color to the Lab color space without allocating anything.
+   *
+   * @param red red channel in the range [0, 1]
+   * @param green green channel in the range [0, 1]
+   * @param blue blue channel in the range [0, 1]
+   * @param result array where L, a and b are written starting from the index 0
+   */
+  public static void toLABColor(double red, double green, double blue, double[] result) {
+    toLABColor(red, green, blue, result, 0);
+  }
 
-    // Convert sRGB to XYZ color space
-    double x = 0.4124564 * red + 0.3575761 * green + 0.1804375 * blue;
-    double y = 0.2126729 * red + 0.7151522 * green + 0.0721750 * blue;
-    double z = 0.0193339 * red + 0.1191920 * green + 0.9503041 * blue;
+  /**
+   * @param offset index of the result where L is written
+   */
+  public static void toLABColor(double red, double green, double blue, double[] result, int offset) {
+    final var fx = fx(red, green, blue);
+    final var fy = fy(red, green, blue);
+    final var fz = fz(red, green, blue);
+
+    result[offset] = 116.0 * fy - 16.0;
+    result[offset + 1] = 500.0 * (fx - fy);
+    result[offset + 2] = 200.0 * (fy - fz);
+  }
 
-    // Convert XYZ to Lab color space
-    double xRef = 95.047;
-    double yRef = 100.000;
-    double zRef = 108.883;
+  private static double toSimilarity(double deltaL, double deltaA, double deltaB) {
+    final var deltaE = Math.sqrt(deltaL * deltaL + deltaA * deltaA + deltaB * deltaB);
 
-    double xRatio = x / xRef;
-    double yRatio = y / yRef;
-    double zRatio = z / zRef;
+    // Calculate the color similarity as a percentage (100% - deltaE)
+    return (1.0 - deltaE) * 100.0;
+  }
 
-    double fx = f(xRatio);
-    double fy = f(yRatio);
-    double fz = f(zRatio);
+  private static double fx(double red, double green, double blue) {
+    return f(RGB_TO_XYZ_RATIO[0] * red + RGB_TO_XYZ_RATIO[1] * green + RGB_TO_XYZ_RATIO[2] * blue);
+  }
 
-    double l = 116.0 * fy - 16.0;
-    double a = 500.0 * (fx - fy);
-    double b = 200.0 * (fy - fz);
+  private static double fy(double red, double green, double blue) {
+    return f(RGB_TO_XYZ_RATIO[3] * red + RGB_TO_XYZ_RATIO[4] * green + RGB_TO_XYZ_RATIO[5] * blue);
+  }
 
-    return new double[]{l, a, b};
+  private static double fz(double red, double green, double blue) {
+    return f(RGB_TO_XYZ_RATIO[6] * red + RGB_TO_XYZ_RATIO[7] * green + RGB_TO_XYZ_RATIO[8] * blue);
   }
 
   private static double f(double t) {
-    double threshold = 6.0 / 29.0;
-    return t > threshold ? t * t * t : (t - 4.0 / 29.0) * 108.0 / 841.0;
+    return t > THRESHOLD ? t * t * t : (t - LINEAR_SHIFT) * LINEAR_SLOPE;
   }
 }
@@ -0,0 +1,124 @@
+package com.task.testtask.utils;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+import java.nio.ByteBuffer;
+
+/**
+ * It's a bulk pixel access layer. Whole regions are pulled with a single {@code getPixels} call into primitive
+ * buffers, so no {@link javafx.scene.paint.Color} is allocated per pixel.
+ */
+public class PixelUtils {
+  private static final int BYTES_PER_PIXEL = 4;
+
+  private PixelUtils() {
+
+  }
+
+  public static int[] readPixels(Image image) {
+    final var width = (int) image.getWidth();
+    final var height = (int) image.getHeight();
+    return readPixels(image, 0, 0, width, height, null);
+  }
+
+  /**
+   * Reads a region of the image as non-premultiplied ARGB values.
+   *
+   * @param buffer a buffer to reuse, a new one is allocated if it's null or too small
+   * @return buffer that contains the region in the row-major order with the stride equal to the width
+   */
+  public static int[] readPixels(Image image, int x, int y, int width, int height, int[] buffer) {
+    final var size = width * height;
+    final var pixels = buffer == null || buffer.length < size ? new int[size] : buffer;
+    image.getPixelReader().getPixels(x, y, width, height, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+    return pixels;
+  }
+
+  /**
+   * Reads a region of the image as BGRA bytes.
+   *
+   * @param buffer a buffer to reuse, a new one is allocated if it's null or too small
+   * @param premultiplied defines whether color channels should be premultiplied by alpha
+   * @return buffer that contains the region, its position is left untouched
+   */
+  public static ByteBuffer readBgraPixels(Image image, int x, int y, int width, int height,
+                                          ByteBuffer buffer, boolean premultiplied) {
+    final var size = width * height * BYTES_PER_PIXEL;
+    final var pixels = buffer == null || buffer.capacity() < size ? ByteBuffer.allocate(size) : buffer;
+    final var format = premultiplied ? PixelFormat.getByteBgraPreInstance() : PixelFormat.getByteBgraInstance();
+    image.getPixelReader().getPixels(x, y, width, height, format, pixels, width * BYTES_PER_PIXEL);
+    return pixels;
+  }
+
+  /**
+   * Creates an image from a region of an ARGB buffer.
+   *
+   * @param offset index of the top left pixel of the region
+   * @param stride distance between two rows of the buffer
+   */
+  public static WritableImage toImage(int[] pixels, int offset, int stride, int width, int height) {
+    final var image = new WritableImage(width, height);
+    image.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), pixels, offset, stride);
+    return image;
+  }
+
+  /**
+   * Halves every tile of a grid on its own. Every pixel is the average of a 2x2 block of its tile, and the last row
+   * and column of a tile of an odd size are repeated, so colors never leak from one tile into another and the tiles
+   * of the result stay on the grid. The source is read one row of tiles at a time.
+   *
+   * @return image of the grid of halved tiles, each of them is {@code (tileWidth + 1) / 2} by
+   *         {@code (tileHeight + 1) / 2}
+   */
+  public static WritableImage downscaleTilesByHalf(Image image, int columnsCount, int rowsCount, int tileWidth,
+                                                  int tileHeight) {
+    final var width = columnsCount * tileWidth;
+    final var halfTileWidth = (tileWidth + 1) / 2;
+    final var halfTileHeight = (tileHeight + 1) / 2;
+    final var halfWidth = columnsCount * halfTileWidth;
+    final var band = new int[width * tileHeight];
+    final var result = new int[halfWidth * rowsCount * halfTileHeight];
+
+    for (int row = 0; row < rowsCount; row++) {
+      readPixels(image, 0, row * tileHeight, width, tileHeight, band);
+      for (int y = 0; y < halfTileHeight; y++) {
+        final var top = y * 2 * width;
+        final var bottom = Math.min(y * 2 + 1, tileHeight - 1) * width;
+        var target = (row * halfTileHeight + y) * halfWidth;
+        for (int column = 0; column < columnsCount; column++) {
+          final var tileLeft = column * tileWidth;
+          for (int x = 0; x < halfTileWidth; x++, target++) {
+            final var left = tileLeft + x * 2;
+            final var right = tileLeft + Math.min(x * 2 + 1, tileWidth - 1);
+            result[target] = average(band[top + left], band[top + right], band[bottom + left], band[bottom + right]);
+          }
+        }
+      }
+    }
+    return toImage(result, 0, halfWidth, halfWidth, rowsCount * halfTileHeight);
+  }
+
+  private static int average(int first, int second, int third, int fourth) {
+    var result = 0;
+    for (int shift = 0; shift < Integer.SIZE; shift += Byte.SIZE) {
+      final var sum = ((first >>> shift) & 0xff) + ((second >>> shift) & 0xff) + ((third >>> shift) & 0xff) +
+              ((fourth >>> shift) & 0xff);
+      result |= ((sum + 2) >> 2) << shift;
+    }
+    return result;
+  }
+
+  public static int red(int argb) {
+    return (argb >> 16) & 0xff;
+  }
+
+  public static int green(int argb) {
+    return (argb >> 8) & 0xff;
+  }
+
+  public static int blue(int argb) {
+    return argb & 0xff;
+  }
+}
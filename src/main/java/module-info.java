@@ -4,15 +4,19 @@ module com.task.testtask {
   requires javafx.fxml;
   requires java.desktop;
   requires lombok;
+  requires jdk.jfr;
 
   exports com.task.testtask.enums;
+  exports com.task.testtask.interfaces;
   exports com.task.testtask.utils;
   exports com.task.testtask.main;
   exports com.task.testtask.saving;
+  exports com.task.testtask.solver;
   opens com.task.testtask to javafx.fxml;
   opens com.task.testtask.enums to javafx.fxml;
   opens com.task.testtask.utils to javafx.fxml;
   opens com.task.testtask.main to javafx.fxml;
   opens com.task.testtask.saving to javafx.fxml;
+  opens com.task.testtask.solver to javafx.fxml;
   exports com.task.testtask;
 }
\ No newline at end of file
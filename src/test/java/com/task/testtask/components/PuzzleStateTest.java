@@ -0,0 +1,167 @@
+package com.task.testtask.components;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PuzzleStateTest {
+  private static final int ROWS_COUNT = 3;
+  private static final int COLUMNS_COUNT = 4;
+
+  @Test
+  void newStateHasAllPiecesInTheTray() {
+    final var state = new PuzzleState(tiles(ROWS_COUNT * COLUMNS_COUNT), ROWS_COUNT, COLUMNS_COUNT);
+
+    for (int piece = 0; piece < state.getPiecesCount(); piece++) {
+      assertEquals(state.trayLocation(piece), state.getLocation(piece));
+    }
+    for (int location = 0; location < state.getSlotsCount(); location++) {
+      assertEquals(PuzzleState.NO_PIECE, state.getPiece(location));
+    }
+    assertEquals(0, state.getCorrectCount());
+    assertConsistent(state);
+  }
+
+  @Test
+  void placingEveryPieceSolves() {
+    final var state = new PuzzleState(tiles(ROWS_COUNT * COLUMNS_COUNT), ROWS_COUNT, COLUMNS_COUNT);
+    state.shuffleTray(new Random(1));
+
+    for (int piece = 0; piece < state.getPiecesCount(); piece++) {
+      state.place(piece, piece, 90);
+      assertConsistent(state);
+    }
+    assertEquals(0, state.getCorrectCount());
+
+    for (int location = 0; location < state.getSlotsCount(); location++) {
+      state.rotate(location, -90);
+      assertEquals(location + 1, state.getCorrectCount());
+    }
+    assertTrue(state.isSolved());
+    assertConsistent(state);
+  }
+
+  @Test
+  void rotationIsKeptInFullAngle() {
+    final var state = new PuzzleState(tiles(1), 1, 1);
+    state.place(0, 0, 0);
+
+    state.rotate(0, -90);
+    assertEquals(270, state.getRotation(0));
+    state.rotate(0, 450);
+    assertEquals(0, state.getRotation(0));
+    assertTrue(state.isSolved());
+
+    state.rotate(0, 360);
+    assertTrue(state.isSolved());
+  }
+
+  @Test
+  void swapMovesRotationsWithPieces() {
+    final var state = new PuzzleState(tiles(2), 1, 2);
+    state.place(0, 1, 180);
+    state.place(1, 0, 0);
+    assertEquals(0, state.getCorrectCount());
+
+    state.swap(0, 1);
+    assertEquals(0, state.getPiece(0));
+    assertEquals(180, state.getRotation(0));
+    assertEquals(1, state.getCorrectCount());
+    assertConsistent(state);
+  }
+
+  @Test
+  void emptyLocationIsNotRotated() {
+    final var state = new PuzzleState(tiles(2), 2, 2);
+    state.rotate(3, 90);
+    assertEquals(0, state.getRotation(3));
+
+    state.swap(3, state.getLocation(1));
+    assertEquals(1, state.getPiece(3));
+    assertEquals(PuzzleState.NO_PIECE, state.getPiece(state.trayLocation(1)));
+    assertConsistent(state);
+  }
+
+  @Test
+  void shuffleKeepsTheImage() {
+    final var state = new PuzzleState(tiles(ROWS_COUNT * COLUMNS_COUNT), ROWS_COUNT, COLUMNS_COUNT);
+    state.place(5, 5, 0);
+    state.place(2, 7, 90);
+
+    state.shuffleTray(new Random(2));
+    assertEquals(5, state.getPiece(5));
+    assertEquals(2, state.getPiece(7));
+    assertEquals(90, state.getRotation(7));
+    assertEquals(1, state.getCorrectCount());
+    assertConsistent(state);
+  }
+
+  @Test
+  void randomMovesKeepTheState() {
+    final var random = new Random(3);
+    final var state = new PuzzleState(tiles(ROWS_COUNT * COLUMNS_COUNT - 2), ROWS_COUNT, COLUMNS_COUNT);
+    final var locationsCount = state.getSlotsCount() + state.getPiecesCount();
+
+    for (int i = 0; i < 5_000; i++) {
+      switch (random.nextInt(4)) {
+        case 0 -> state.swap(random.nextInt(locationsCount), random.nextInt(locationsCount));
+        case 1 -> state.rotate(random.nextInt(locationsCount), (random.nextInt(9) - 4) * 90);
+        case 2 -> state.place(random.nextInt(state.getPiecesCount()), random.nextInt(state.getSlotsCount()),
+                random.nextInt(4) * 90);
+        default -> state.shuffleTray(random);
+      }
+      assertConsistent(state);
+    }
+  }
+
+  @Test
+  void tooManyTilesAreRejected() {
+    assertThrows(IllegalArgumentException.class, () -> new PuzzleState(tiles(5), 2, 2));
+  }
+
+  /**
+   * Checks that pieces and locations point at each other, every piece is somewhere exactly once, and the count of
+   * right pieces is the one counted from scratch.
+   */
+  private static void assertConsistent(PuzzleState state) {
+    final var locationsCount = state.getSlotsCount() + state.getPiecesCount();
+    final var seen = new boolean[state.getPiecesCount()];
+    var correctCount = 0;
+
+    for (int location = 0; location < locationsCount; location++) {
+      final var piece = state.getPiece(location);
+      final var rotation = state.getRotation(location);
+      assertTrue(rotation >= 0 && rotation < 360 && rotation % 90 == 0, "rotation " + rotation);
+      if (piece == PuzzleState.NO_PIECE) {
+        continue;
+      }
+      assertFalse(seen[piece], "piece " + piece + " is twice");
+      seen[piece] = true;
+      assertEquals(location, state.getLocation(piece));
+      assertEquals(state.getTiles().get(piece), state.getTile(location));
+      if (location == piece && rotation == 0) {
+        correctCount++;
+      }
+    }
+    for (int piece = 0; piece < seen.length; piece++) {
+      assertTrue(seen[piece], "piece " + piece + " is lost");
+    }
+    assertEquals(correctCount, state.getCorrectCount());
+    assertEquals(correctCount == state.getPiecesCount(), state.isSolved());
+  }
+
+  private static List<Tile> tiles(int count) {
+    final var tiles = new ArrayList<Tile>();
+    for (int i = 0; i < count; i++) {
+      tiles.add(new Tile(null, i, 0, 1, 1));
+    }
+    return tiles;
+  }
+}
@@ -0,0 +1,356 @@
+package com.task.testtask.main;
+
+import com.task.testtask.enums.SolverPhase;
+import com.task.testtask.interfaces.SolverListener;
+import com.task.testtask.saving.TileSet;
+import com.task.testtask.solver.EdgeDescriptors;
+import com.task.testtask.solver.Placement;
+import com.task.testtask.solver.SolverOptions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the solver end to end: puzzles are cut from an image, shuffled with a fixed seed and solved.
+ * <p>The accuracy checks compare the share of puzzles at their places and the share of right neighbour pairs with
+ * the floor of the case. The wall-time check is tagged {@value #PERFORMANCE_TAG} and runs only with
+ * {@code mvn test -Pperformance}.</p>
+ */
+class AutomaticImageCollectorTest {
+  private static final String PERFORMANCE_TAG = "performance";
+
+  private static final long SEED = 42;
+  private static final Path IMAGES_DIRECTORY = Path.of("src", "main", "resources", "images");
+  private static final int BUNDLED_ROWS_COUNT = 4;
+  private static final int BUNDLED_COLUMNS_COUNT = 4;
+  private static final int SMALL_GRID_SIZE = 4;
+  private static final double SYNTHETIC_FLOOR = 0.98;
+  private static final double BUNDLED_FLOOR = 0.95;
+
+  private static final int WARMUP_GRID_SIZE = 16;
+  private static final int WARMUP_RUNS_COUNT = 5;
+  private static final int TIMED_RUNS_COUNT = 3;
+  private static final int CALIBRATION_VALUES_COUNT = 1 << 20;
+  private static final double NANOS_IN_MILLI = 1_000_000.0;
+
+  /**
+   * A case fails when its best solve time grows over its budget multiplied by this factor.
+   */
+  private static final double TIME_FACTOR = 2;
+
+  @Test
+  void solvesSmallSyntheticImage() {
+    assertSyntheticAccuracy(SMALL_GRID_SIZE, SMALL_GRID_SIZE, 16, false);
+  }
+
+  @Test
+  void solvesSquareSyntheticImage() {
+    assertSyntheticAccuracy(10, 10, 48, false);
+  }
+
+  @Test
+  void solvesWideSyntheticImage() {
+    assertSyntheticAccuracy(12, 20, 24, false);
+  }
+
+  @Test
+  void solvesBigSyntheticImage() {
+    assertSyntheticAccuracy(32, 32, 16, false);
+  }
+
+  @Test
+  void solvesSyntheticImageWithRotation() {
+    assertSyntheticAccuracy(6, 6, 32, true);
+  }
+
+  @Test
+  void solvesBundledImageOnItsOwnGrid() {
+    assertBundledAccuracy(BUNDLED_ROWS_COUNT, BUNDLED_COLUMNS_COUNT);
+  }
+
+  /**
+   * Both sides of the bundled image are dark, so tiles of the last column look like tiles of the first one. The
+   * solver used to join them and put the last columns to the left of the first one.
+   */
+  @Test
+  void solvesBundledImageWithDarkSides() {
+    assertBundledAccuracy(8, 8);
+  }
+
+  @Test
+  void solvesBundledImageOnFinerGrid() {
+    assertBundledAccuracy(16, 16);
+  }
+
+  @Test
+  void solvesBundledImageOnWideGrid() {
+    assertBundledAccuracy(24, 32);
+  }
+
+  /**
+   * Descriptors of another border thickness are rejected before any phase is measured and reported.
+   */
+  @Test
+  void rejectsDescriptorsOfOtherBorderThickness() {
+    final var phases = new ArrayList<SolverPhase>();
+    final var options = SolverOptions.builder().listener(new SolverListener() {
+      @Override
+      public void onPhaseFinished(SolverPhase phase, long durationNanos) {
+        phases.add(phase);
+      }
+    }).build();
+    final var borderThickness = AutomaticImageCollector.BORDER_THICKNESS + 1;
+    final var tileSize = 2 * borderThickness;
+    final var edgeDescriptors = new EdgeDescriptors(SMALL_GRID_SIZE, tileSize, tileSize, borderThickness,
+            (index, buffer) -> new int[tileSize * tileSize]);
+
+    assertThrows(IllegalArgumentException.class, () -> new AutomaticImageCollector(edgeDescriptors, options));
+    assertTrue(phases.isEmpty());
+  }
+
+  /**
+   * Solves every case on a single thread and compares its best time with the budget. Budgets are multiples of the
+   * time of a fixed workload that doesn't touch the solver, it's measured first on the same machine, so they hold on
+   * slower and faster machines alike. They were measured on a development machine.
+   */
+  @Test
+  @Tag(PERFORMANCE_TAG)
+  void solvesWithinTimeBudgets() {
+    // the first solves are slow until the hot loops are compiled, so they aren't measured
+    final var warmupSize = WARMUP_GRID_SIZE * WARMUP_GRID_SIZE;
+    final var warmup = shuffle(syntheticImage(warmupSize, warmupSize), warmupSize, warmupSize, WARMUP_GRID_SIZE,
+            WARMUP_GRID_SIZE);
+    for (int i = 0; i < WARMUP_RUNS_COUNT; i++) {
+      solve(warmup, WARMUP_GRID_SIZE, WARMUP_GRID_SIZE, false, 1);
+    }
+    final var calibrationMillis = calibrate();
+
+    assertSyntheticTime(32, 32, 16, 4.5, calibrationMillis);
+    assertSyntheticTime(64, 64, 16, 5.5, calibrationMillis);
+    final var bundled = bundledImage();
+    assertTime("bundled 24x32", shuffle(bundled.pixels(), bundled.width(), bundled.height(), 24, 32), 24, 32, 5.5,
+            calibrationMillis);
+  }
+
+  /**
+   * It's an image with its size.
+   */
+  private record Image(int[] pixels, int width, int height) {
+  }
+
+  /**
+   * It's a set of shuffled puzzles.
+   *
+   * @param order original index of the puzzle at every position of the shuffled list
+   */
+  private record ShuffledPuzzles(TileSet tileSet, List<Integer> order) {
+  }
+
+  private static void assertSyntheticAccuracy(int rowCount, int colCount, int tileSize, boolean rotationAware) {
+    final var width = colCount * tileSize;
+    final var height = rowCount * tileSize;
+    assertAccuracy(shuffle(syntheticImage(width, height), width, height, rowCount, colCount), rowCount, colCount,
+            rotationAware, SYNTHETIC_FLOOR);
+  }
+
+  private static void assertBundledAccuracy(int rowCount, int colCount) {
+    final var image = bundledImage();
+    assertAccuracy(shuffle(image.pixels(), image.width(), image.height(), rowCount, colCount), rowCount, colCount,
+            false, BUNDLED_FLOOR);
+  }
+
+  private static void assertAccuracy(ShuffledPuzzles puzzles, int rowCount, int colCount, boolean rotationAware,
+                                     double floor) {
+    final var placements = solve(puzzles, rowCount, colCount, rotationAware,
+            Runtime.getRuntime().availableProcessors());
+
+    final var places = toOriginalPlaces(placements, puzzles.order());
+    final var direct = directAccuracy(places);
+    final var neighbour = neighbourAccuracy(places, rowCount, colCount);
+    final var grid = rowCount + "x" + colCount;
+    assertTrue(direct >= floor, () -> grid + " puzzles at their places: " + direct + " < " + floor);
+    assertTrue(neighbour >= floor, () -> grid + " right neighbours: " + neighbour + " < " + floor);
+  }
+
+  private static void assertSyntheticTime(int rowCount, int colCount, int tileSize, double budget,
+                                          double calibrationMillis) {
+    final var width = colCount * tileSize;
+    final var height = rowCount * tileSize;
+    assertTime("synthetic " + rowCount + "x" + colCount, shuffle(syntheticImage(width, height), width, height,
+            rowCount, colCount), rowCount, colCount, budget, calibrationMillis);
+  }
+
+  /**
+   * @param budget allowed solve time in multiples of the calibration time
+   */
+  private static void assertTime(String name, ShuffledPuzzles puzzles, int rowCount, int colCount, double budget,
+                                 double calibrationMillis) {
+    var bestNanos = Long.MAX_VALUE;
+    for (int i = 0; i < TIMED_RUNS_COUNT; i++) {
+      final var start = System.nanoTime();
+      solve(puzzles, rowCount, colCount, false, 1);
+      bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+    }
+    final var millis = bestNanos / NANOS_IN_MILLI;
+    final var limitMillis = budget * TIME_FACTOR * calibrationMillis;
+    assertTrue(millis <= limitMillis, () -> String.format("%s took %.1f ms, %.1f calibrations, the limit is %.1f ms",
+            name, millis, millis / calibrationMillis, limitMillis));
+  }
+
+  /**
+   * Sorts a fixed array of pseudo-random values a few times.
+   *
+   * @return best time of the sort in milliseconds
+   */
+  private static double calibrate() {
+    final var random = new Random(SEED);
+    final var values = new double[CALIBRATION_VALUES_COUNT];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = random.nextDouble();
+    }
+
+    var bestNanos = Long.MAX_VALUE;
+    for (int i = 0; i < WARMUP_RUNS_COUNT; i++) {
+      final var copy = values.clone();
+      final var start = System.nanoTime();
+      Arrays.sort(copy);
+      bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+    }
+    return bestNanos / NANOS_IN_MILLI;
+  }
+
+  private static ShuffledPuzzles shuffle(int[] pixels, int width, int height, int rowCount, int colCount) {
+    final var tileSet = TileSet.cut(pixels, width, height, rowCount, colCount);
+    final var order = new ArrayList<Integer>();
+    for (int i = 0; i < tileSet.size(); i++) {
+      order.add(i);
+    }
+    Collections.shuffle(order, new Random(SEED));
+    final List<int[]> shuffled = new ArrayList<>(tileSet.size());
+    for (var index : order) {
+      shuffled.add(tileSet.tiles().get(index));
+    }
+    return new ShuffledPuzzles(new TileSet(tileSet.width(), tileSet.height(), shuffled), order);
+  }
+
+  private static List<Placement> solve(ShuffledPuzzles puzzles, int rowCount, int colCount, boolean rotationAware,
+                                       int parallelism) {
+    final var tileSet = puzzles.tileSet();
+    final var options = SolverOptions.builder()
+            .rowsCount(rowCount)
+            .columnsCount(colCount)
+            .rotationAware(rotationAware)
+            .parallelism(parallelism)
+            .build();
+    return new AutomaticImageCollector(tileSet.size(), tileSet.width(), tileSet.height(),
+            (index, buffer) -> tileSet.tiles().get(index), options).collectPlacements();
+  }
+
+  /**
+   * @return original index of the puzzle at every place, -1 marks an empty or rotated one
+   */
+  private static int[] toOriginalPlaces(List<Placement> placements, List<Integer> order) {
+    final var places = new int[placements.size()];
+    for (int i = 0; i < places.length; i++) {
+      final var placement = placements.get(i);
+      places[i] = placement.index() < 0 || placement.rotation() != 0 ? -1 : order.get(placement.index());
+    }
+    return places;
+  }
+
+  private static double directAccuracy(int[] places) {
+    var rightCount = 0;
+    for (int i = 0; i < places.length; i++) {
+      if (places[i] == i) {
+        rightCount++;
+      }
+    }
+    return (double) rightCount / places.length;
+  }
+
+  /**
+   * Counts pairs of touching places that hold puzzles that touch in the image the same way, so a block that is
+   * assembled right but shifted still counts.
+   */
+  private static double neighbourAccuracy(int[] places, int rowCount, int colCount) {
+    var rightCount = 0;
+    for (int row = 0; row < rowCount; row++) {
+      for (int col = 0; col < colCount; col++) {
+        final var place = places[row * colCount + col];
+        if (place < 0) {
+          continue;
+        }
+        if (col + 1 < colCount && place % colCount + 1 < colCount && places[row * colCount + col + 1] == place + 1) {
+          rightCount++;
+        }
+        if (row + 1 < rowCount && places[(row + 1) * colCount + col] == place + colCount) {
+          rightCount++;
+        }
+      }
+    }
+    return (double) rightCount / (rowCount * (colCount - 1) + (rowCount - 1) * colCount);
+  }
+
+  /**
+   * Puts the bundled tiles back into the image they were cut from.
+   */
+  private static Image bundledImage() {
+    final var tileSet = TileSet.readDirectory(IMAGES_DIRECTORY);
+    final var width = BUNDLED_COLUMNS_COUNT * tileSet.width();
+    final var height = BUNDLED_ROWS_COUNT * tileSet.height();
+    final var pixels = new int[width * height];
+    for (int i = 0; i < tileSet.size(); i++) {
+      var offset = i / BUNDLED_COLUMNS_COUNT * tileSet.height() * width + i % BUNDLED_COLUMNS_COUNT * tileSet.width();
+      for (int row = 0; row < tileSet.height(); row++, offset += width) {
+        System.arraycopy(tileSet.tiles().get(i), row * tileSet.width(), pixels, offset, tileSet.width());
+      }
+    }
+    return new Image(pixels, width, height);
+  }
+
+  /**
+   * Generates a smooth image from a few waves with a weak ramp on top, it has no flat areas that would make scores
+   * equal.
+   */
+  private static int[] syntheticImage(int width, int height) {
+    final var random = new Random(SEED);
+    final var waves = new double[12][4];
+    for (var wave : waves) {
+      wave[0] = random.nextDouble() * 0.05;
+      wave[1] = random.nextDouble() * 0.05;
+      wave[2] = random.nextDouble() * 6;
+      wave[3] = random.nextDouble();
+    }
+
+    final var pixels = new int[width * height];
+    final var channels = new double[3];
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        channels[0] = 0;
+        channels[1] = 0;
+        channels[2] = 0;
+        for (int i = 0; i < waves.length; i++) {
+          channels[i % channels.length] += Math.sin(x * waves[i][0] + y * waves[i][1] + waves[i][2]) * waves[i][3];
+        }
+        final var red = clamp(128 + 40 * channels[0] + 0.3 * (x % 97));
+        final var green = clamp(128 + 40 * channels[1] + 0.2 * (y % 89));
+        final var blue = clamp(128 + 40 * channels[2]);
+        pixels[y * width + x] = 0xff000000 | red << 16 | green << 8 | blue;
+      }
+    }
+    return pixels;
+  }
+
+  private static int clamp(double value) {
+    return (int) Math.max(0, Math.min(255, value));
+  }
+}
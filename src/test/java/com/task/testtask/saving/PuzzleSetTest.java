@@ -0,0 +1,130 @@
+package com.task.testtask.saving;
+
+import com.task.testtask.enums.Direction;
+import com.task.testtask.solver.EdgeDescriptors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PuzzleSetTest {
+  private static final int ROWS_COUNT = 2;
+  private static final int COLUMNS_COUNT = 3;
+  private static final int TILE_WIDTH = 5;
+  private static final int TILE_HEIGHT = 3;
+
+  @TempDir
+  Path directory;
+
+  private final TileSet tileSet = cutRandomImage();
+
+  @Test
+  void pixelsOnlyRoundTrip() throws IOException {
+    final var puzzleSet = writeAndRead(null, null);
+
+    assertTiles(puzzleSet);
+    assertNull(puzzleSet.getEdgeDescriptors());
+    assertNull(puzzleSet.getTruthOrder());
+  }
+
+  @Test
+  void descriptorsAndTruthRoundTrip() throws IOException {
+    final var edgeDescriptors = describe();
+    final var truthOrder = new int[]{4, 0, 5, 2, 1, 3};
+    final var puzzleSet = writeAndRead(edgeDescriptors, truthOrder);
+
+    assertTiles(puzzleSet);
+    assertSameDescriptors(edgeDescriptors, puzzleSet.getEdgeDescriptors());
+    assertArrayEquals(truthOrder, puzzleSet.getTruthOrder());
+  }
+
+  @Test
+  void descriptorsWithoutTruthRoundTrip() throws IOException {
+    final var edgeDescriptors = describe();
+    final var puzzleSet = writeAndRead(edgeDescriptors, null);
+
+    assertTiles(puzzleSet);
+    assertSameDescriptors(edgeDescriptors, puzzleSet.getEdgeDescriptors());
+    assertNull(puzzleSet.getTruthOrder());
+  }
+
+  @Test
+  void truthWithoutDescriptorsRoundTrip() throws IOException {
+    final var truthOrder = new int[]{5, 4, 3, 2, 1, 0};
+    final var puzzleSet = writeAndRead(null, truthOrder);
+
+    assertTiles(puzzleSet);
+    assertNull(puzzleSet.getEdgeDescriptors());
+    assertArrayEquals(truthOrder, puzzleSet.getTruthOrder());
+  }
+
+  @Test
+  void otherFileIsRejected() throws IOException {
+    final var file = directory.resolve("other." + PuzzleSet.FILE_EXTENSION);
+    Files.write(file, new byte[128]);
+    assertThrows(IOException.class, () -> PuzzleSet.read(file));
+  }
+
+  private PuzzleSet writeAndRead(EdgeDescriptors edgeDescriptors, int[] truthOrder) throws IOException {
+    final var file = directory.resolve("tiles." + PuzzleSet.FILE_EXTENSION);
+    PuzzleSet.write(file, tileSet, ROWS_COUNT, COLUMNS_COUNT, edgeDescriptors, truthOrder);
+    return PuzzleSet.read(file);
+  }
+
+  private void assertTiles(PuzzleSet puzzleSet) {
+    assertEquals(ROWS_COUNT, puzzleSet.getRowsCount());
+    assertEquals(COLUMNS_COUNT, puzzleSet.getColumnsCount());
+    assertEquals(TILE_WIDTH, puzzleSet.getTileWidth());
+    assertEquals(TILE_HEIGHT, puzzleSet.getTileHeight());
+    assertEquals(tileSet.size(), puzzleSet.size());
+
+    int[] buffer = null;
+    for (int i = 0; i < tileSet.size(); i++) {
+      buffer = puzzleSet.readPixels(i, buffer);
+      assertArrayEquals(tileSet.tiles().get(i), buffer);
+
+      final var view = puzzleSet.getTilePixels(i);
+      final var viewPixels = new int[view.remaining()];
+      view.get(viewPixels);
+      assertArrayEquals(tileSet.tiles().get(i), viewPixels);
+    }
+  }
+
+  private EdgeDescriptors describe() {
+    return new EdgeDescriptors(tileSet.size(), TILE_WIDTH, TILE_HEIGHT, 2,
+            (index, buffer) -> tileSet.tiles().get(index));
+  }
+
+  private static void assertSameDescriptors(EdgeDescriptors expected, EdgeDescriptors actual) {
+    assertNotNull(actual);
+    assertEquals(expected.getPiecesCount(), actual.getPiecesCount());
+    assertEquals(expected.getWidth(), actual.getWidth());
+    assertEquals(expected.getHeight(), actual.getHeight());
+    assertEquals(expected.getBorderThickness(), actual.getBorderThickness());
+    for (int piece = 0; piece < expected.getPiecesCount(); piece++) {
+      for (var side : Direction.values()) {
+        assertEquals(expected.getRed(piece, side), actual.getRed(piece, side), 0);
+        assertEquals(expected.getGreen(piece, side), actual.getGreen(piece, side), 0);
+        assertEquals(expected.getBlue(piece, side), actual.getBlue(piece, side), 0);
+      }
+    }
+  }
+
+  private static TileSet cutRandomImage() {
+    final var random = new Random(3);
+    final var pixels = new int[COLUMNS_COUNT * TILE_WIDTH * ROWS_COUNT * TILE_HEIGHT];
+    for (int i = 0; i < pixels.length; i++) {
+      pixels[i] = random.nextInt();
+    }
+    return TileSet.cut(pixels, COLUMNS_COUNT * TILE_WIDTH, ROWS_COUNT * TILE_HEIGHT, ROWS_COUNT, COLUMNS_COUNT);
+  }
+}
@@ -0,0 +1,124 @@
+package com.task.testtask.saving;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class QoiTest {
+  private static final int HEADER_SIZE = 14;
+  private static final int END_MARKER_SIZE = 8;
+
+  @Test
+  void runOfThePreviousPixel() {
+    assertOps(new int[]{0xff000000, 0xff000000, 0xff000000}, 0xc2);
+  }
+
+  @Test
+  void longRunIsSplitIntoRunsOf62() {
+    final var pixels = new int[100];
+    Arrays.fill(pixels, 0xff000000);
+    assertOps(pixels, 0xfd, 0xe5);
+  }
+
+  @Test
+  void smallDifferenceWrapsAround() {
+    assertOps(new int[]{0xff010101}, 0x7f);
+    assertOps(new int[]{0xffffffff}, 0x55);
+  }
+
+  @Test
+  void lumaDifference() {
+    assertOps(new int[]{0xff0a0a0a}, 0xaa, 0x88);
+  }
+
+  @Test
+  void indexOfRecentlySeenPixel() {
+    assertOps(new int[]{0xff804020, 0xff102040, 0xff804020},
+            0xfe, 0x80, 0x40, 0x20, 0xfe, 0x10, 0x20, 0x40, 0x15);
+  }
+
+  @Test
+  void alphaChangeIsWrittenInFull() {
+    assertOps(new int[]{0x80112233, 0x80112234, 0xff112234},
+            0xff, 0x11, 0x22, 0x33, 0x80, 0x6b, 0xff, 0x11, 0x22, 0x34, 0xff);
+  }
+
+  @Test
+  void mixedImageRoundTrip() throws IOException {
+    final var width = 37;
+    final var height = 23;
+    final var random = new Random(7);
+    final var palette = new int[]{0xff102030, 0x80ff0000, 0x00000000, 0xffabcdef, 0x7f7f7f7f};
+    final var pixels = new int[width * height];
+    for (int i = 0; i < pixels.length; i++) {
+      pixels[i] = switch (i / width % 5) {
+        case 0 -> 0xff000000 | (i * 3 & 0xff) << 16 | (i * 5 & 0xff) << 8 | i * 7 & 0xff;
+        case 1 -> pixels[Math.max(i - 1, 0)];
+        case 2 -> palette[random.nextInt(palette.length)];
+        case 3 -> random.nextInt();
+        default -> i % 2 == 0 ? 0xff808080 + random.nextInt(3) * 0x010101 : 0x40808080 + random.nextInt(30);
+      };
+    }
+
+    final var output = new ByteArrayOutputStream();
+    Qoi.write(pixels, width, height, output);
+    final var dimensions = new int[2];
+    final var decoded = Qoi.read(new ByteArrayInputStream(output.toByteArray()), dimensions);
+
+    assertEquals(width, dimensions[0]);
+    assertEquals(height, dimensions[1]);
+    assertArrayEquals(pixels, decoded);
+  }
+
+  @Test
+  void imagesAreDecodedInARow() throws IOException {
+    final var first = new int[]{0xff010203, 0x00000000, 0xff010203};
+    final var second = new int[]{0x12345678, 0x12345678};
+    final var firstEncoded = Qoi.encode(first, 3, 1);
+    final var secondEncoded = Qoi.encode(second, 1, 2);
+    final var buffer = ByteBuffer.allocate(5 + firstEncoded.length + secondEncoded.length);
+    buffer.position(5);
+    buffer.put(firstEncoded).put(secondEncoded).position(5);
+
+    final var dimensions = new int[2];
+    assertArrayEquals(first, Qoi.decode(buffer, dimensions));
+    assertArrayEquals(second, Qoi.decode(buffer, dimensions));
+    assertEquals(1, dimensions[0]);
+    assertEquals(2, dimensions[1]);
+    assertEquals(buffer.limit(), buffer.position());
+  }
+
+  @Test
+  void wrongMagicIsRejected() {
+    final var encoded = Qoi.encode(new int[]{0xff000000}, 1, 1);
+    encoded[0] = 'x';
+    assertThrows(IOException.class, () -> Qoi.decode(ByteBuffer.wrap(encoded), new int[2]));
+  }
+
+  /**
+   * Checks the ops written between the header and the end marker and that they decode back to the pixels.
+   */
+  private static void assertOps(int[] pixels, int... ops) {
+    final var encoded = Qoi.encode(pixels, pixels.length, 1);
+    final var actualOps = new int[encoded.length - HEADER_SIZE - END_MARKER_SIZE];
+    for (int i = 0; i < actualOps.length; i++) {
+      actualOps[i] = encoded[HEADER_SIZE + i] & 0xff;
+    }
+    assertArrayEquals(ops, actualOps, "ops " + Arrays.toString(actualOps));
+
+    try {
+      assertArrayEquals(pixels, Qoi.decode(ByteBuffer.wrap(encoded), new int[2]));
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    }
+  }
+}
@@ -0,0 +1,84 @@
+package com.task.testtask.solver;
+
+import com.task.testtask.enums.Direction;
+import com.task.testtask.enums.ScoreMetric;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompatibilityMatrixBuilderTest {
+  private static final int PIECES_COUNT = 40;
+  private static final int SIZE = 12;
+  private static final int CANDIDATES_COUNT = 4;
+
+  @Test
+  void boundIsNeverBelowSimilarity() {
+    final var edgeDescriptors = createDescriptors();
+    for (int piece = 0; piece < PIECES_COUNT; piece++) {
+      for (var side : Direction.values()) {
+        for (int otherPiece = 0; otherPiece < PIECES_COUNT; otherPiece++) {
+          for (var otherSide : Direction.values()) {
+            final var similarity = EdgeDissimilarity.calculateSimilarity(edgeDescriptors, piece, side, otherPiece,
+                    otherSide);
+            final var bound = EdgeDissimilarity.calculateMeanSquareBound(edgeDescriptors, piece, side, otherPiece,
+                    otherSide);
+            assertTrue(EdgeDissimilarity.toSimilarity(bound) >= similarity);
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  void prunedBuildKeepsCandidates() {
+    assertSameCandidates(false);
+  }
+
+  @Test
+  void prunedBuildKeepsCandidatesOfRotatedPuzzles() {
+    assertSameCandidates(true);
+  }
+
+  /**
+   * Compares the candidate graph of the full matrix with the one of the pruned matrix and checks that the pruning
+   * skipped some of the pairs.
+   */
+  private static void assertSameCandidates(boolean rotationAware) {
+    final var edgeDescriptors = createDescriptors();
+    final var fullBuilder = new CompatibilityMatrixBuilder(1, ScoreMetric.PIXEL_DISSIMILARITY, rotationAware);
+    final var expected = fullBuilder.build(edgeDescriptors).toCandidateGraph(CANDIDATES_COUNT);
+    final var prunedBuilder = new CompatibilityMatrixBuilder(2, ScoreMetric.PIXEL_DISSIMILARITY, rotationAware);
+    final var actual = prunedBuilder.build(edgeDescriptors, CANDIDATES_COUNT).toCandidateGraph(CANDIDATES_COUNT);
+
+    for (int state = 0; state < expected.getStatesCount(); state++) {
+      for (var side : Direction.values()) {
+        for (int rank = 0; rank < CANDIDATES_COUNT; rank++) {
+          assertEquals(expected.getCandidate(state, side, rank), actual.getCandidate(state, side, rank));
+          assertEquals(expected.getScore(state, side, rank), actual.getScore(state, side, rank));
+        }
+      }
+    }
+    assertTrue(prunedBuilder.getComparisonsCount() < fullBuilder.getComparisonsCount());
+  }
+
+  /**
+   * Creates puzzles of smooth gradients with a bit of noise, so the means of the sides differ a lot between puzzles
+   * and the lines still differ inside the puzzles.
+   */
+  private static EdgeDescriptors createDescriptors() {
+    final var random = new Random(7);
+    final var tiles = new int[PIECES_COUNT][SIZE * SIZE];
+    for (var tile : tiles) {
+      final var base = random.nextInt(200);
+      final var slope = random.nextInt(5);
+      for (int i = 0; i < tile.length; i++) {
+        final var value = base + slope * (i % SIZE) + random.nextInt(16);
+        tile[i] = 0xff000000 | value << 16 | (255 - value) << 8 | random.nextInt(256);
+      }
+    }
+    return new EdgeDescriptors(PIECES_COUNT, SIZE, SIZE, 2, (index, buffer) -> tiles[index]);
+  }
+}
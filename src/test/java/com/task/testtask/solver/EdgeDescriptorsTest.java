@@ -0,0 +1,65 @@
+package com.task.testtask.solver;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class EdgeDescriptorsTest {
+  private static final int PIECES_COUNT = 5;
+  private static final int WIDTH = 7;
+  private static final int HEIGHT = 4;
+  private static final int BORDER_THICKNESS = 2;
+
+  @Test
+  void littleEndianRoundTrip() {
+    assertRoundTrip(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  @Test
+  void bigEndianRoundTrip() {
+    assertRoundTrip(ByteOrder.BIG_ENDIAN);
+  }
+
+  /**
+   * Writes the descriptors after a few bytes of other data and checks that every array, the derived ones too, is
+   * read back as it was and that both sides move the buffer by the serialized size.
+   */
+  private static void assertRoundTrip(ByteOrder order) {
+    final var random = new Random(11);
+    final var tiles = new int[PIECES_COUNT][WIDTH * HEIGHT];
+    for (var tile : tiles) {
+      for (int i = 0; i < tile.length; i++) {
+        tile[i] = random.nextInt();
+      }
+    }
+    final var expected = new EdgeDescriptors(PIECES_COUNT, WIDTH, HEIGHT, BORDER_THICKNESS,
+            (index, buffer) -> tiles[index]);
+
+    final var start = 3;
+    final var buffer = ByteBuffer.allocate(start + (int) expected.getSerializedSize()).order(order);
+    buffer.position(start);
+    expected.writeTo(buffer);
+    assertEquals(buffer.limit(), buffer.position());
+
+    buffer.position(start);
+    final var actual = EdgeDescriptors.readFrom(buffer);
+    assertEquals(buffer.limit(), buffer.position());
+
+    assertEquals(PIECES_COUNT, actual.getPiecesCount());
+    assertEquals(WIDTH, actual.getWidth());
+    assertEquals(HEIGHT, actual.getHeight());
+    assertEquals(BORDER_THICKNESS, actual.getBorderThickness());
+    assertArrayEquals(expected.getMeanLabColors(), actual.getMeanLabColors(), 0);
+    assertArrayEquals(expected.getEdgeLines(), actual.getEdgeLines());
+    assertArrayEquals(expected.getInnerLines(), actual.getInnerLines());
+    assertArrayEquals(expected.getReversedEdgeLines(), actual.getReversedEdgeLines());
+    assertArrayEquals(expected.getReversedInnerLines(), actual.getReversedInnerLines());
+    assertArrayEquals(expected.getEdgeLineMeans(), actual.getEdgeLineMeans(), 0);
+    assertArrayEquals(expected.getPredictedLineMeans(), actual.getPredictedLineMeans(), 0);
+  }
+}
@@ -0,0 +1,81 @@
+package com.task.testtask.utils;
+
+import com.sun.management.ThreadMXBean;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ColorSimilarityUtilsTest {
+  private static final int COLORS_COUNT = 64;
+  private static final int WARMUP_ROUNDS_COUNT = 20_000;
+  private static final int MEASURED_ROUNDS_COUNT = 1_000;
+
+  private final double[] rgb = new double[COLORS_COUNT * 3];
+  private final double[] lab = new double[COLORS_COUNT * 3];
+
+  ColorSimilarityUtilsTest() {
+    for (int i = 0; i < rgb.length; i++) {
+      rgb[i] = (i * 37 % 256) / 255.0;
+    }
+  }
+
+  @Test
+  void equalColorsAreFullySimilar() {
+    assertEquals(100.0, ColorSimilarityUtils.similarity(0.2, 0.4, 0.6, 0.2, 0.4, 0.6), 1e-9);
+
+    ColorSimilarityUtils.toLABColors(rgb, lab, COLORS_COUNT);
+    assertEquals(100.0, ColorSimilarityUtils.labSimilarity(lab, 3, lab, 3), 1e-9);
+  }
+
+  @Test
+  void labSimilarityMatchesSimilarity() {
+    ColorSimilarityUtils.toLABColors(rgb, lab, COLORS_COUNT);
+    for (int i = 0; i + 1 < COLORS_COUNT; i++) {
+      final var first = i * 3;
+      final var second = first + 3;
+      final var expected = ColorSimilarityUtils.similarity(rgb[first], rgb[first + 1], rgb[first + 2],
+              rgb[second], rgb[second + 1], rgb[second + 2]);
+      assertEquals(expected, ColorSimilarityUtils.labSimilarity(lab, first, lab, second), 1e-9);
+    }
+  }
+
+  /**
+   * The methods are called in the hot loops of the solver, so they must not allocate even a single object.
+   */
+  @Test
+  void comparisonsAllocateNothing() {
+    final var threadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    final var threadId = Thread.currentThread().getId();
+    assertTrue(threadBean.isThreadAllocatedMemoryEnabled(), "allocated memory of threads isn't measured");
+
+    var sink = compareAll(WARMUP_ROUNDS_COUNT);
+
+    // the reading itself can allocate, so the cost of two readings in a row is subtracted
+    final var idleStart = threadBean.getThreadAllocatedBytes(threadId);
+    final var idleEnd = threadBean.getThreadAllocatedBytes(threadId);
+    final var start = threadBean.getThreadAllocatedBytes(threadId);
+    sink += compareAll(MEASURED_ROUNDS_COUNT);
+    final var end = threadBean.getThreadAllocatedBytes(threadId);
+
+    assertEquals(idleEnd - idleStart, end - start, "bytes allocated by the comparisons");
+    assertTrue(Double.isFinite(sink));
+  }
+
+  private double compareAll(int roundsCount) {
+    var sum = 0.0;
+    for (int round = 0; round < roundsCount; round++) {
+      ColorSimilarityUtils.toLABColors(rgb, lab, COLORS_COUNT);
+      for (int i = 0; i + 1 < COLORS_COUNT; i++) {
+        final var first = i * 3;
+        final var second = first + 3;
+        sum += ColorSimilarityUtils.labSimilarity(lab, first, lab, second);
+        sum += ColorSimilarityUtils.similarity(rgb[first], rgb[first + 1], rgb[first + 2],
+                rgb[second], rgb[second + 1], rgb[second + 2]);
+      }
+    }
+    return sum;
+  }
+}